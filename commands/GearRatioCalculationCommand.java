@@ -1,6 +1,5 @@
 package frc.trigon.lib.commands;
 
-import com.ctre.phoenix6.controls.VoltageOut;
 import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
@@ -60,7 +59,7 @@ public class GearRatioCalculationCommand extends Command {
         this(
                 () -> motor.getSignal(TalonFXSignal.ROTOR_POSITION),
                 () -> encoder.getSignal(CANcoderSignal.POSITION),
-                (voltage) -> motor.setControl(new VoltageOut(voltage)),
+                motor::setVoltage,
                 backlashAccountabilityTimeSeconds,
                 requirement
         );
@@ -0,0 +1,266 @@
+package frc.trigon.lib.hardware;
+
+import org.littletonrobotics.junction.Logger;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.DoubleConsumer;
+
+/**
+ * A class that estimates the load of every CAN bus from the signals registered to it, so an overloaded bus is reported at boot instead of showing up as stale data mid-match.
+ * Signals that are registered with the same status frame are counted as a single frame, sent at the fastest frequency among them.
+ * Signals registered without a status frame (such as Phoenix 6 signals, whose frame layout isn't published) are counted as their own frame, so for them the estimate is an upper bound.
+ * <p>
+ * Optionally, signals that read once per robot loop are scaled down to fit the budget, while threaded signals keep their frequency since they're sampled for a reason.
+ * The planner should be run once, after all the devices are created and their signals are registered.
+ */
+public class CANBusUtilizationPlanner {
+    /**
+     * The maximum frames per second of the roboRIO's CAN bus, which runs CAN 2.0 at 1 Mbit/s with frames of roughly 130 bits.
+     */
+    public static final double ROBORIO_CAPACITY_FRAMES_PER_SECOND = 7500;
+    /**
+     * The maximum frames per second of a CANivore's CAN FD bus, which sends the data phase of every frame at 8 Mbit/s.
+     */
+    public static final double CANIVORE_CAPACITY_FRAMES_PER_SECOND = 20000;
+    /**
+     * The lowest frequency a signal is scaled down to. Phoenix 6 signals can't be updated any slower.
+     */
+    public static final double MINIMUM_SCALED_FREQUENCY_HERTZ = 4;
+    private static final Map<String, Map<String, PlannedSignal>> CANBUS_TO_SIGNALS = new LinkedHashMap<>();
+    private static final Map<String, Double> CANBUS_TO_CAPACITY_FRAMES_PER_SECOND = new HashMap<>();
+    private static final List<Runnable> PLAN_LISTENERS = new ArrayList<>();
+    private static double MAXIMUM_UTILIZATION = 0.8;
+    private static boolean IS_SCALING_DOWN_TO_FIT = false;
+
+    /**
+     * Sets the capacity of a CAN bus, overriding the default capacity of the roboRIO's bus or a CANivore's bus.
+     *
+     * @param canbus                  the name of the CAN bus. An empty string means the roboRIO's CAN bus
+     * @param capacityFramesPerSecond the maximum frames per second the bus can carry
+     */
+    public static synchronized void setCapacityFramesPerSecond(String canbus, double capacityFramesPerSecond) {
+        CANBUS_TO_CAPACITY_FRAMES_PER_SECOND.put(canbus, capacityFramesPerSecond);
+    }
+
+    /**
+     * Sets the portion of each bus's capacity that the registered signals may use before the bus is considered over budget.
+     * Defaults to 0.8, which leaves room for control requests and configuration frames.
+     *
+     * @param maximumUtilization the maximum utilization, between 0 and 1
+     */
+    public static void setMaximumUtilization(double maximumUtilization) {
+        MAXIMUM_UTILIZATION = maximumUtilization;
+    }
+
+    /**
+     * Sets whether the planner should scale down the frequencies of non-threaded signals on buses that are over budget.
+     * Signals are scaled down proportionally, and never below {@link #MINIMUM_SCALED_FREQUENCY_HERTZ}.
+     *
+     * @param isScalingDownToFit whether signals should be scaled down to fit the budget
+     */
+    public static void setScalingDownToFit(boolean isScalingDownToFit) {
+        IS_SCALING_DOWN_TO_FIT = isScalingDownToFit;
+    }
+
+    /**
+     * @return whether signals are scaled down to fit the budget, as set in {@link #setScalingDownToFit(boolean)}
+     */
+    public static boolean isScalingDownToFit() {
+        return IS_SCALING_DOWN_TO_FIT;
+    }
+
+    /**
+     * Registers a signal to the planner, counted as its own status frame. Registering a signal with the same name again replaces the previous registration.
+     * This is called by the device classes when a signal is registered, and shouldn't usually be called directly.
+     *
+     * @param canbus               the name of the CAN bus the signal is sent on. An empty string means the roboRIO's CAN bus
+     * @param signalName           a name that's unique to the signal across the bus, used for replacing registrations and reporting
+     * @param updateFrequencyHertz the frequency at which the signal is sent
+     * @param isScalable           whether the signal's frequency may be scaled down to fit the budget
+     * @param frequencySetter      sets the signal's frequency when it's scaled down, or null if it's not scalable
+     */
+    public static void registerSignal(String canbus, String signalName, double updateFrequencyHertz, boolean isScalable, DoubleConsumer frequencySetter) {
+        registerSignal(canbus, signalName, null, updateFrequencyHertz, isScalable, frequencySetter);
+    }
+
+    /**
+     * Registers a signal to the planner. Registering a signal with the same name again replaces the previous registration.
+     * All the signals registered with the same status frame are counted as a single frame, and a frame is only scaled down if all of its signals are scalable.
+     * This is called by the device classes when a signal is registered, and shouldn't usually be called directly.
+     *
+     * @param canbus               the name of the CAN bus the signal is sent on. An empty string means the roboRIO's CAN bus
+     * @param signalName           a name that's unique to the signal across the bus, used for replacing registrations and reporting
+     * @param statusFrameName      a name that's unique to the status frame that carries the signal across the bus, or null if the signal is counted as its own frame
+     * @param updateFrequencyHertz the frequency at which the signal is sent
+     * @param isScalable           whether the signal's frequency may be scaled down to fit the budget
+     * @param frequencySetter      sets the signal's frequency when it's scaled down, or null if it's not scalable
+     */
+    public static synchronized void registerSignal(String canbus, String signalName, String statusFrameName, double updateFrequencyHertz, boolean isScalable, DoubleConsumer frequencySetter) {
+        if (RobotHardwareStats.isReplay() || updateFrequencyHertz <= 0)
+            return;
+
+        final PlannedSignal signal = new PlannedSignal(statusFrameName == null ? signalName : statusFrameName, updateFrequencyHertz, isScalable && frequencySetter != null, frequencySetter);
+        CANBUS_TO_SIGNALS.computeIfAbsent(canbus, key -> new LinkedHashMap<>()).put(signalName, signal);
+    }
+
+    /**
+     * Adds a listener that's called once at the end of every {@link #plan()}, after all the signals were scaled.
+     * This lets a device that sets all of its frequencies in a single configuration apply them once, instead of once for every scaled signal.
+     *
+     * @param planListener the listener to add
+     */
+    public static synchronized void addPlanListener(Runnable planListener) {
+        PLAN_LISTENERS.add(planListener);
+    }
+
+    /**
+     * Estimates the load of every CAN bus, logs it under "CANBusUtilization/", and warns about buses that are over budget.
+     * If {@link #setScalingDownToFit(boolean)} was enabled, the non-threaded signals of buses that are over budget are scaled down.
+     * Signals aren't scaled down in simulation, since simulated signals malfunction at low frequencies.
+     *
+     * @return the estimated frames per second of every bus after planning, by CAN bus name
+     */
+    public static synchronized Map<String, Double> plan() {
+        final Map<String, Double> canbusToFramesPerSecond = new LinkedHashMap<>();
+        for (Map.Entry<String, Map<String, PlannedSignal>> entry : CANBUS_TO_SIGNALS.entrySet())
+            canbusToFramesPerSecond.put(entry.getKey(), planCanbus(entry.getKey(), groupIntoFrames(entry.getValue().values())));
+        for (Runnable planListener : PLAN_LISTENERS)
+            planListener.run();
+        return canbusToFramesPerSecond;
+    }
+
+    private static List<PlannedFrame> groupIntoFrames(Iterable<PlannedSignal> signals) {
+        final Map<String, PlannedFrame> frameNameToFrame = new LinkedHashMap<>();
+        for (PlannedSignal signal : signals)
+            frameNameToFrame.computeIfAbsent(signal.statusFrameName, key -> new PlannedFrame()).signals.add(signal);
+        return new ArrayList<>(frameNameToFrame.values());
+    }
+
+    private static double planCanbus(String canbus, List<PlannedFrame> frames) {
+        final String canbusName = canbus.isEmpty() ? "roboRIO" : canbus;
+        final double budgetFramesPerSecond = getCapacityFramesPerSecond(canbus) * MAXIMUM_UTILIZATION;
+        final double requestedFramesPerSecond = calculateFramesPerSecond(frames);
+        double framesPerSecond = requestedFramesPerSecond;
+        if (framesPerSecond > budgetFramesPerSecond && IS_SCALING_DOWN_TO_FIT && !RobotHardwareStats.isSimulation())
+            framesPerSecond = scaleDownToFit(frames, budgetFramesPerSecond);
+
+        Logger.recordOutput("CANBusUtilization/" + canbusName + "/RequestedFramesPerSecond", requestedFramesPerSecond);
+        Logger.recordOutput("CANBusUtilization/" + canbusName + "/EstimatedFramesPerSecond", framesPerSecond);
+        Logger.recordOutput("CANBusUtilization/" + canbusName + "/BudgetFramesPerSecond", budgetFramesPerSecond);
+        Logger.recordOutput("CANBusUtilization/" + canbusName + "/EstimatedUtilization", framesPerSecond / getCapacityFramesPerSecond(canbus));
+        if (framesPerSecond > budgetFramesPerSecond)
+            System.out.println("CAN bus \"" + canbusName + "\" is over budget: an estimated " + framesPerSecond + " frames per second out of " + budgetFramesPerSecond + ". Consider lowering signal frequencies or enabling CANBusUtilizationPlanner.setScalingDownToFit.");
+        else if (framesPerSecond < requestedFramesPerSecond)
+            System.out.println("CAN bus \"" + canbusName + "\" was over budget, so its non-threaded signals were scaled down from " + requestedFramesPerSecond + " to " + framesPerSecond + " frames per second.");
+        return framesPerSecond;
+    }
+
+    /**
+     * Scales the scalable frames down by a common factor, so the bus fits the budget.
+     * Frames that hit the minimum frequency are fixed at it, and the factor is recalculated for the rest.
+     *
+     * @param frames                the frames of the bus
+     * @param budgetFramesPerSecond the budget of the bus
+     * @return the estimated frames per second of the bus after scaling
+     */
+    private static double scaleDownToFit(List<PlannedFrame> frames, double budgetFramesPerSecond) {
+        final List<PlannedFrame> scaledFrames = new ArrayList<>();
+        double fixedFramesPerSecond = 0;
+        for (PlannedFrame frame : frames) {
+            if (frame.isScalable() && frame.getFrequencyHertz() > MINIMUM_SCALED_FREQUENCY_HERTZ)
+                scaledFrames.add(frame);
+            else
+                fixedFramesPerSecond += frame.getFrequencyHertz();
+        }
+
+        boolean hasClampedFrames = true;
+        double scale = 1;
+        while (hasClampedFrames && !scaledFrames.isEmpty()) {
+            scale = Math.max(0, budgetFramesPerSecond - fixedFramesPerSecond) / calculateFramesPerSecond(scaledFrames);
+            hasClampedFrames = false;
+            for (int i = scaledFrames.size() - 1; i >= 0; i--) {
+                final PlannedFrame frame = scaledFrames.get(i);
+                if (frame.getFrequencyHertz() * scale > MINIMUM_SCALED_FREQUENCY_HERTZ)
+                    continue;
+
+                frame.scale(MINIMUM_SCALED_FREQUENCY_HERTZ / frame.getFrequencyHertz());
+                fixedFramesPerSecond += MINIMUM_SCALED_FREQUENCY_HERTZ;
+                scaledFrames.remove(i);
+                hasClampedFrames = true;
+            }
+        }
+
+        if (scale < 1) {
+            for (PlannedFrame frame : scaledFrames)
+                frame.scale(scale);
+        }
+        return calculateFramesPerSecond(frames);
+    }
+
+    private static double calculateFramesPerSecond(List<PlannedFrame> frames) {
+        double framesPerSecond = 0;
+        for (PlannedFrame frame : frames)
+            framesPerSecond += frame.getFrequencyHertz();
+        return framesPerSecond;
+    }
+
+    private static double getCapacityFramesPerSecond(String canbus) {
+        final Double capacityFramesPerSecond = CANBUS_TO_CAPACITY_FRAMES_PER_SECOND.get(canbus);
+        if (capacityFramesPerSecond != null)
+            return capacityFramesPerSecond;
+        return canbus.isEmpty() || canbus.equals("rio") ? ROBORIO_CAPACITY_FRAMES_PER_SECOND : CANIVORE_CAPACITY_FRAMES_PER_SECOND;
+    }
+
+    private static class PlannedSignal {
+        private final String statusFrameName;
+        private final boolean isScalable;
+        private final DoubleConsumer frequencySetter;
+        private double frequencyHertz;
+
+        private PlannedSignal(String statusFrameName, double frequencyHertz, boolean isScalable, DoubleConsumer frequencySetter) {
+            this.statusFrameName = statusFrameName;
+            this.frequencyHertz = frequencyHertz;
+            this.isScalable = isScalable;
+            this.frequencySetter = frequencySetter;
+        }
+
+        private void setFrequency(double frequencyHertz) {
+            this.frequencyHertz = frequencyHertz;
+            frequencySetter.accept(frequencyHertz);
+        }
+    }
+
+    /**
+     * A status frame, which is sent at the fastest frequency among its signals.
+     */
+    private static class PlannedFrame {
+        private final List<PlannedSignal> signals = new ArrayList<>();
+
+        private double getFrequencyHertz() {
+            double frequencyHertz = 0;
+            for (PlannedSignal signal : signals)
+                frequencyHertz = Math.max(frequencyHertz, signal.frequencyHertz);
+            return frequencyHertz;
+        }
+
+        private boolean isScalable() {
+            for (PlannedSignal signal : signals) {
+                if (!signal.isScalable)
+                    return false;
+            }
+            return true;
+        }
+
+        /**
+         * Scales the frequencies of all the frame's signals by the same factor, so the frame's frequency is scaled by it too. Signals are never scaled below the minimum frequency.
+         */
+        private void scale(double scale) {
+            for (PlannedSignal signal : signals)
+                signal.setFrequency(Math.max(MINIMUM_SCALED_FREQUENCY_HERTZ, signal.frequencyHertz * scale));
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package frc.trigon.lib.hardware;
+
+import com.ctre.phoenix6.StatusCode;
+import com.revrobotics.REVLibError;
+import edu.wpi.first.wpilibj.Timer;
+import frc.trigon.lib.hardware.phoenix6.Phoenix6ConfigurationFingerprints;
+import org.littletonrobotics.junction.Logger;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * A class that applies the configurations of many devices concurrently, instead of blocking on every device one after the other.
+ * Configurations are grouped by CAN bus. Every bus is configured in parallel with the others, with a bounded amount of concurrent configurations per bus so a single bus isn't flooded.
+ * Failed configurations are retried, and the duration and result of every configuration are logged and printed, so the boot time scales with the slowest device rather than the sum of all of them.
+ * <p>
+ * Example usage:
+ * <pre>{@code
+ * new DeviceConfigurationBatch()
+ *         .addPhoenix6Configuration("ArmMotor", "canivore", () -> armMotor.applyConfiguration(armConfiguration))
+ *         .addSparkConfiguration("IntakeMotor", () -> intakeMotor.applyConfiguration(intakeConfiguration, ResetMode.kResetSafeParameters, PersistMode.kNoPersistParameters))
+ *         .apply();
+ * }</pre>
+ */
+public class DeviceConfigurationBatch {
+    public static final int
+            DEFAULT_MAXIMUM_PARALLEL_CONFIGURATIONS_PER_BUS = 4,
+            DEFAULT_MAXIMUM_ATTEMPTS = 3;
+    private static final String SPARK_CANBUS = "";
+    private final int maximumParallelConfigurationsPerBus, maximumAttempts;
+    private final Map<String, List<ConfigurationTask>> canbusToTasks = new LinkedHashMap<>();
+    private final List<ConfigurationTask> tasks = new ArrayList<>();
+
+    /**
+     * Creates a new DeviceConfigurationBatch with the default parallelism and attempts.
+     */
+    public DeviceConfigurationBatch() {
+        this(DEFAULT_MAXIMUM_PARALLEL_CONFIGURATIONS_PER_BUS, DEFAULT_MAXIMUM_ATTEMPTS);
+    }
+
+    /**
+     * Creates a new DeviceConfigurationBatch.
+     *
+     * @param maximumParallelConfigurationsPerBus the maximum amount of configurations that are applied at the same time on a single CAN bus
+     * @param maximumAttempts                     the maximum amount of times a configuration is applied before it's reported as failed
+     */
+    public DeviceConfigurationBatch(int maximumParallelConfigurationsPerBus, int maximumAttempts) {
+        this.maximumParallelConfigurationsPerBus = maximumParallelConfigurationsPerBus;
+        this.maximumAttempts = maximumAttempts;
+    }
+
+    /**
+     * Adds the configuration of a Phoenix 6 device to the batch.
+     *
+     * @param deviceName           the name of the device, used for logging
+     * @param canbus               the name of the CAN bus the device is on. An empty string means the roboRIO's CAN bus
+     * @param configurationApplier applies the configuration and returns its status code, such as {@code () -> motor.applyConfiguration(configuration)}
+     * @return this batch, for chaining
+     */
+    public DeviceConfigurationBatch addPhoenix6Configuration(String deviceName, String canbus, Supplier<StatusCode> configurationApplier) {
+        return addConfiguration(deviceName, canbus, () -> {
+            final StatusCode status = configurationApplier.get();
+            return status.isOK() ? null : status.name();
+        });
+    }
+
+    /**
+     * Adds the configuration of a Spark motor to the batch. Sparks are always on the roboRIO's CAN bus.
+     *
+     * @param deviceName           the name of the device, used for logging
+     * @param configurationApplier applies the configuration and returns its error, such as {@code () -> motor.applyConfiguration(configuration, resetMode, persistMode)}
+     * @return this batch, for chaining
+     */
+    public DeviceConfigurationBatch addSparkConfiguration(String deviceName, Supplier<REVLibError> configurationApplier) {
+        return addConfiguration(deviceName, SPARK_CANBUS, () -> {
+            final REVLibError error = configurationApplier.get();
+            return error == REVLibError.kOk ? null : error.name();
+        });
+    }
+
+    /**
+     * Applies all the configurations in the batch, and blocks until they're all done.
+     * The results are logged under "DeviceConfiguration/", and failures are printed.
+     * The fingerprints of the applied Phoenix 6 configurations are persisted once, after all the configurations are done.
+     *
+     * @return the results of the configurations, in the order they were added
+     */
+    public ConfigurationResult[] apply() {
+        final double startTimestamp = Timer.getFPGATimestamp();
+        final List<ExecutorService> executors = new ArrayList<>();
+        Phoenix6ConfigurationFingerprints.beginBatch();
+        try {
+            for (List<ConfigurationTask> canbusTasks : canbusToTasks.values())
+                submitCanbusTasks(canbusTasks, executors);
+
+            final ConfigurationResult[] results = collectResults();
+            reportResults(results, Timer.getFPGATimestamp() - startTimestamp);
+            return results;
+        } finally {
+            for (ExecutorService executor : executors)
+                executor.shutdownNow();
+            Phoenix6ConfigurationFingerprints.endBatch();
+        }
+    }
+
+    private DeviceConfigurationBatch addConfiguration(String deviceName, String canbus, Supplier<String> configurationApplier) {
+        final ConfigurationTask task = new ConfigurationTask(deviceName, canbus, configurationApplier);
+        canbusToTasks.computeIfAbsent(canbus, key -> new ArrayList<>()).add(task);
+        tasks.add(task);
+        return this;
+    }
+
+    private void submitCanbusTasks(List<ConfigurationTask> canbusTasks, List<ExecutorService> executors) {
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.min(maximumParallelConfigurationsPerBus, canbusTasks.size()), runnable -> {
+            final Thread thread = new Thread(runnable, "DeviceConfiguration/" + canbusTasks.get(0).canbus);
+            thread.setDaemon(true);
+            return thread;
+        });
+        executors.add(executor);
+        for (ConfigurationTask task : canbusTasks)
+            task.future = executor.submit(() -> applyWithRetries(task));
+    }
+
+    private ConfigurationResult[] collectResults() {
+        final ConfigurationResult[] results = new ConfigurationResult[tasks.size()];
+        for (int i = 0; i < results.length; i++)
+            results[i] = getResult(tasks.get(i));
+        return results;
+    }
+
+    private ConfigurationResult getResult(ConfigurationTask task) {
+        try {
+            return task.future.get();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            return new ConfigurationResult(task.deviceName, task.canbus, false, 0, 0, exception.toString());
+        } catch (ExecutionException exception) {
+            return new ConfigurationResult(task.deviceName, task.canbus, false, 0, 0, exception.getCause().toString());
+        }
+    }
+
+    private ConfigurationResult applyWithRetries(ConfigurationTask task) {
+        final double startTimestamp = Timer.getFPGATimestamp();
+        String error = null;
+        int attempts = 0;
+        while (attempts < maximumAttempts) {
+            attempts++;
+            error = task.configurationApplier.get();
+            if (error == null)
+                break;
+        }
+        return new ConfigurationResult(task.deviceName, task.canbus, error == null, attempts, Timer.getFPGATimestamp() - startTimestamp, error);
+    }
+
+    private void reportResults(ConfigurationResult[] results, double totalDurationSeconds) {
+        int failures = 0;
+        for (ConfigurationResult result : results) {
+            final String key = "DeviceConfiguration/" + result.deviceName();
+            Logger.recordOutput(key + "/Succeeded", result.succeeded());
+            Logger.recordOutput(key + "/Attempts", result.attempts());
+            Logger.recordOutput(key + "/DurationSeconds", result.durationSeconds());
+            if (result.succeeded())
+                continue;
+
+            failures++;
+            System.out.println("Failed to configure " + result.deviceName() + " after " + result.attempts() + " attempts: " + result.error());
+        }
+
+        Logger.recordOutput("DeviceConfiguration/TotalDurationSeconds", totalDurationSeconds);
+        System.out.println("Configured " + (results.length - failures) + "/" + results.length + " devices in " + totalDurationSeconds + " seconds");
+    }
+
+    /**
+     * The result of applying a single device's configuration.
+     *
+     * @param deviceName      the name of the device
+     * @param canbus          the CAN bus the device is on
+     * @param succeeded       whether the configuration was applied successfully
+     * @param attempts        the amount of times the configuration was applied
+     * @param durationSeconds the time it took to apply the configuration, including all attempts
+     * @param error           the name of the last error, or null if the configuration succeeded
+     */
+    public record ConfigurationResult(String deviceName, String canbus, boolean succeeded, int attempts, double durationSeconds, String error) {
+    }
+
+    private static class ConfigurationTask {
+        private final String deviceName, canbus;
+        private final Supplier<String> configurationApplier;
+        private Future<ConfigurationResult> future;
+
+        private ConfigurationTask(String deviceName, String canbus, Supplier<String> configurationApplier) {
+            this.deviceName = deviceName;
+            this.canbus = canbus;
+            this.configurationApplier = configurationApplier;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package frc.trigon.lib.hardware;
+
+import java.lang.invoke.VarHandle;
+
+/**
+ * A single-producer single-consumer ring buffer of frames, where every frame is a fixed amount of primitive doubles sampled together, along with a timestamp.
+ * Frames are drained struct-of-arrays, so all the values of a single column are contiguous.
+ * When the producer laps the consumer, the oldest frames are overwritten and counted as dropped.
+ */
+public class DoubleFrameRingBuffer {
+    private final int capacity, frameSize;
+    private final double[] values, timestamps;
+    private volatile long writeIndex = 0;
+    private long readIndex = 0;
+    private long droppedFrames = 0;
+
+    /**
+     * Creates a new DoubleFrameRingBuffer.
+     *
+     * @param capacity  the maximum amount of frames the buffer can hold before it starts dropping the oldest ones
+     * @param frameSize the amount of values in every frame
+     */
+    public DoubleFrameRingBuffer(int capacity, int frameSize) {
+        this.capacity = capacity;
+        this.frameSize = frameSize;
+        this.values = new double[capacity * frameSize];
+        this.timestamps = new double[capacity];
+    }
+
+    /**
+     * Sets a value of the frame that's currently being written. The frame is only visible to the consumer once {@link #commitFrame(double)} is called.
+     * Should only be called from the producer thread.
+     *
+     * @param column the index of the value in the frame
+     * @param value  the value
+     */
+    public void putValue(int column, double value) {
+        values[getSlot(writeIndex) * frameSize + column] = value;
+    }
+
+    /**
+     * Publishes the frame that's currently being written, overwriting the oldest frame if the buffer is full.
+     * Should only be called from the producer thread.
+     *
+     * @param timestampSeconds the timestamp of the frame in seconds
+     */
+    public void commitFrame(double timestampSeconds) {
+        final long index = writeIndex;
+        timestamps[getSlot(index)] = timestampSeconds;
+        writeIndex = index + 1;
+    }
+
+    /**
+     * Moves all available frames into the given arrays, ordered from oldest to newest.
+     * The values are written column-major, so the value of column j in frame i is written to {@code destinationValues[j * columnStride + i]}.
+     * Should only be called from the consumer thread.
+     *
+     * @param destinationValues     the array to write the frames' values to. Must have room for {@link #getCapacity()} frames
+     * @param columnStride          the distance between the starts of two consecutive columns in the destination array. Must be at least {@link #getCapacity()}
+     * @param destinationTimestamps the array to write the frames' timestamps to. Must have room for {@link #getCapacity()} frames
+     * @return the amount of frames that were drained
+     */
+    public int drain(double[] destinationValues, int columnStride, double[] destinationTimestamps) {
+        final long endIndex = writeIndex;
+        final long startIndex = Math.max(readIndex, endIndex - capacity);
+        for (long i = startIndex; i < endIndex; i++) {
+            final int slot = getSlot(i);
+            final int destinationFrame = (int) (i - startIndex);
+            for (int column = 0; column < frameSize; column++)
+                destinationValues[column * columnStride + destinationFrame] = values[slot * frameSize + column];
+            destinationTimestamps[destinationFrame] = timestamps[slot];
+        }
+
+        // Like StampedLock.validate, the fence orders the frame copies before the write index is read again.
+        VarHandle.acquireFence();
+        final long firstValidIndex = Math.min(endIndex, Math.max(startIndex, writeIndex + 1 - capacity));
+        final int drainedFrames = (int) (endIndex - firstValidIndex);
+        final int overwrittenFrames = (int) (firstValidIndex - startIndex);
+        if (overwrittenFrames > 0 && drainedFrames > 0) {
+            for (int column = 0; column < frameSize; column++)
+                System.arraycopy(destinationValues, column * columnStride + overwrittenFrames, destinationValues, column * columnStride, drainedFrames);
+            System.arraycopy(destinationTimestamps, overwrittenFrames, destinationTimestamps, 0, drainedFrames);
+        }
+
+        droppedFrames += firstValidIndex - readIndex;
+        readIndex = endIndex;
+        return drainedFrames;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getFrameSize() {
+        return frameSize;
+    }
+
+    /**
+     * @return the amount of frames that were overwritten before being drained since the buffer was created
+     */
+    public long getDroppedFrames() {
+        return droppedFrames;
+    }
+
+    private int getSlot(long index) {
+        return (int) (index % capacity);
+    }
+}
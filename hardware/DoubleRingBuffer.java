@@ -0,0 +1,105 @@
+package frc.trigon.lib.hardware;
+
+import java.lang.invoke.VarHandle;
+
+/**
+ * A single-producer single-consumer ring buffer of primitive doubles.
+ * Used to pass samples from a signal thread to the main thread without boxing or allocating per sample.
+ * When the producer laps the consumer, the oldest samples are overwritten and counted as dropped.
+ */
+public class DoubleRingBuffer {
+    private static final double[] EMPTY_ARRAY = new double[0];
+    private final int capacity;
+    private final double[] buffer, drainedValues;
+    private volatile long writeIndex = 0;
+    private long readIndex = 0;
+    private long droppedSamples = 0;
+
+    /**
+     * Creates a new DoubleRingBuffer.
+     *
+     * @param capacity the maximum amount of samples the buffer can hold before it starts dropping the oldest ones
+     */
+    public DoubleRingBuffer(int capacity) {
+        this.capacity = capacity;
+        this.buffer = new double[capacity];
+        this.drainedValues = new double[capacity];
+    }
+
+    /**
+     * Adds a sample to the buffer, overwriting the oldest sample if the buffer is full.
+     * Should only be called from the producer thread.
+     *
+     * @param value the sample to add
+     */
+    public void offer(double value) {
+        final long index = writeIndex;
+        buffer[(int) (index % capacity)] = value;
+        writeIndex = index + 1;
+    }
+
+    /**
+     * Moves all available samples into the reusable array returned by {@link #getDrainedValues()}.
+     * Should only be called from the consumer thread.
+     *
+     * @return the amount of samples that were drained
+     */
+    public int drain() {
+        final long endIndex = writeIndex;
+        final long startIndex = Math.max(readIndex, endIndex - capacity);
+        for (long i = startIndex; i < endIndex; i++)
+            drainedValues[(int) (i - startIndex)] = buffer[(int) (i % capacity)];
+
+        // Orders the copies above before the write index is read again, otherwise the read can't prove the copied slots weren't overwritten.
+        VarHandle.acquireFence();
+        final long firstValidIndex = Math.min(endIndex, Math.max(startIndex, writeIndex + 1 - capacity));
+        final int drainedSamples = (int) (endIndex - firstValidIndex);
+        if (firstValidIndex > startIndex && drainedSamples > 0)
+            System.arraycopy(drainedValues, (int) (firstValidIndex - startIndex), drainedValues, 0, drainedSamples);
+
+        droppedSamples += firstValidIndex - readIndex;
+        readIndex = endIndex;
+        return drainedSamples;
+    }
+
+    /**
+     * Drains all available samples into a new array of the exact length.
+     * This is used when the samples need to outlive the next drain, like when they're put in a log table.
+     * Should only be called from the consumer thread.
+     *
+     * @return the drained samples, ordered from oldest to newest
+     */
+    public double[] drainToArray() {
+        final int drainedSamples = drain();
+        if (drainedSamples == 0)
+            return EMPTY_ARRAY;
+
+        final double[] array = new double[drainedSamples];
+        System.arraycopy(drainedValues, 0, array, 0, drainedSamples);
+        return array;
+    }
+
+    /**
+     * Gets the reusable array the samples are drained into.
+     * Only the first n values are valid, where n is the value returned by the latest {@link #drain()}.
+     *
+     * @return the drained values
+     */
+    public double[] getDrainedValues() {
+        return drainedValues;
+    }
+
+    /**
+     * @return the amount of samples that were overwritten before being drained since the buffer was created
+     */
+    public long getDroppedSamples() {
+        return droppedSamples;
+    }
+
+    /**
+     * @return the amount of samples that were offered to the buffer since it was created
+     */
+    public long getTotalSamples() {
+        return writeIndex;
+    }
+}
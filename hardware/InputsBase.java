@@ -4,11 +4,13 @@ import edu.wpi.first.wpilibj.Timer;
 import org.littletonrobotics.junction.LogTable;
 import org.littletonrobotics.junction.inputs.LoggableInputs;
 
+import java.util.Arrays;
 import java.util.NoSuchElementException;
 
 public abstract class InputsBase implements LoggableInputs {
     protected LogTable latestTable = null;
     private final String name;
+    private SignalHandle[] signalHandles = new SignalHandle[0];
     private double lastErrorTimestamp = 0;
 
     /**
@@ -20,9 +22,15 @@ public abstract class InputsBase implements LoggableInputs {
         this.name = name;
     }
 
+    public String getName() {
+        return name;
+    }
+
     @Override
     public void fromLog(LogTable table) {
         latestTable = table;
+        for (SignalHandle signalHandle : signalHandles)
+            signalHandle.updateFromTable(table);
     }
 
     /**
@@ -72,6 +80,98 @@ public abstract class InputsBase implements LoggableInputs {
         return value.getDoubleArray();
     }
 
+    /**
+     * Gets the timestamps of the samples of a threaded signal.
+     * Each timestamp matches the sample with the same index in {@link #getThreadedSignal(String)}.
+     * Only available for devices that record the timestamps of their threaded signals.
+     *
+     * @param signalName the name of the threaded signal
+     * @return the timestamps of the threaded signal's samples in seconds
+     */
+    public double[] getThreadedSignalTimestamps(String signalName) {
+        if (latestTable == null) {
+            if (shouldPrintError())
+                new NullPointerException("The device \"" + name + "\" is trying to retrieve the timestamps of threaded signal \"" + signalName + "\". Though, the latest table is null. This is likely due to the device not being logged.").printStackTrace();
+            return new double[0];
+        }
+
+        final LogTable.LogValue value = latestTable.get(signalName + "_ThreadedTimestamps");
+        if (value == null) {
+            if (shouldPrintError())
+                new NoSuchElementException("The device \"" + name + "\" is trying to retrieve the timestamps of threaded signal \"" + signalName + "\" which aren't recorded.").printStackTrace();
+            return new double[0];
+        }
+
+        return value.getDoubleArray();
+    }
+
+    /**
+     * Registers a handle for a signal, or returns the existing handle if the signal already has one.
+     * Handles are also registered in replay, so they're filled from the log table the same way {@link #getSignal(String)} is.
+     *
+     * @param signalName the name of the signal
+     * @param isThreaded whether the signal is a threaded signal
+     * @return the signal's handle
+     */
+    protected SignalHandle registerSignalHandle(String signalName, boolean isThreaded) {
+        for (SignalHandle signalHandle : signalHandles) {
+            if (signalHandle.name.equals(signalName)) {
+                signalHandle.isThreaded |= isThreaded;
+                return signalHandle;
+            }
+        }
+
+        final SignalHandle signalHandle = new SignalHandle(signalName);
+        signalHandle.isThreaded = isThreaded;
+        signalHandles = append(signalHandles, signalHandle);
+        return signalHandle;
+    }
+
+    /**
+     * Puts a signal's value in the table and in its handle's slot.
+     *
+     * @param table        the table to put the value in
+     * @param signalHandle the handle of the signal
+     * @param value        the value of the signal
+     */
+    protected void putSignal(LogTable table, SignalHandle signalHandle, double value) {
+        table.put(signalHandle.name, value);
+        signalHandle.setValue(value);
+    }
+
+    /**
+     * Puts a threaded signal's values in the table and in its handle's slot.
+     * The latest value is also put as the signal's regular value, if there is one.
+     *
+     * @param table          the table to put the values in
+     * @param signalHandle   the handle of the signal
+     * @param threadedValues the values the signal thread sampled since the last loop
+     */
+    protected void putThreadedSignal(LogTable table, SignalHandle signalHandle, double[] threadedValues) {
+        table.put(signalHandle.threadedKey, threadedValues);
+        signalHandle.setThreadedValues(threadedValues);
+        if (threadedValues.length != 0)
+            putSignal(table, signalHandle, threadedValues[threadedValues.length - 1]);
+    }
+
+    /**
+     * Puts the timestamps of a threaded signal's values in the table and in its handle's slot.
+     *
+     * @param table              the table to put the timestamps in
+     * @param signalHandle       the handle of the signal
+     * @param threadedTimestamps the timestamps of the values the signal thread sampled since the last loop
+     */
+    protected void putThreadedSignalTimestamps(LogTable table, SignalHandle signalHandle, double[] threadedTimestamps) {
+        table.put(signalHandle.threadedTimestampsKey, threadedTimestamps);
+        signalHandle.setThreadedTimestamps(threadedTimestamps);
+    }
+
+    protected static <T> T[] append(T[] array, T element) {
+        final T[] newArray = Arrays.copyOf(array, array.length + 1);
+        newArray[array.length] = element;
+        return newArray;
+    }
+
     private boolean shouldPrintError() {
         final double currentTime = Timer.getTimestamp();
         final boolean shouldPrint = currentTime - lastErrorTimestamp > 5;
@@ -1,5 +1,7 @@
 package frc.trigon.lib.hardware;
 
+import edu.wpi.first.wpilibj.RobotController;
+
 /**
  * A class that contains stats about the robot's hardware.
  */
@@ -7,6 +9,7 @@ public class RobotHardwareStats {
     public static final double SUPPLY_VOLTAGE = 12;
     private static boolean IS_SIMULATION = false;
     private static boolean IS_REPLAY = false;
+    private static boolean IS_ACCELERATED_SIMULATION = false;
     private static double PERIODIC_TIME_SECONDS = 0.02;
 
     /**
@@ -44,6 +47,33 @@ public class RobotHardwareStats {
         return PERIODIC_TIME_SECONDS;
     }
 
+    /**
+     * Sets whether the simulation runs faster than real time, as driven by {@link frc.trigon.lib.hardware.simulation.AcceleratedSimulation}.
+     * In accelerated simulation, the signal threads sample their signals synchronously from the robot loop instead of waiting on the wall clock, and inputs aren't prefetched.
+     * This is set by {@link frc.trigon.lib.hardware.simulation.AcceleratedSimulation#start()}, which should be called before creating any devices.
+     *
+     * @param isAcceleratedSimulation whether the simulation runs faster than real time
+     */
+    public static void setAcceleratedSimulation(boolean isAcceleratedSimulation) {
+        IS_ACCELERATED_SIMULATION = isAcceleratedSimulation;
+    }
+
+    /**
+     * @return whether the robot is running in accelerated simulation, as set in {@link #setAcceleratedSimulation(boolean)}
+     */
+    public static boolean isAcceleratedSimulation() {
+        return IS_SIMULATION && IS_ACCELERATED_SIMULATION;
+    }
+
+    /**
+     * Gets the current time of the robot's clock. In simulation, this is the simulated clock, which runs faster than real time in accelerated simulation.
+     *
+     * @return the current time in seconds
+     */
+    public static double getCurrentTimeSeconds() {
+        return RobotController.getFPGATime() / 1e6;
+    }
+
     /**
      * @return whether the robot is in replay mode or not
      */
@@ -0,0 +1,85 @@
+package frc.trigon.lib.hardware;
+
+import org.littletonrobotics.junction.LogTable;
+
+/**
+ * A class that represents a handle to a registered signal of a device.
+ * The handle holds the signal's latest values in primitive slots that are updated whenever the inputs are logged or replayed,
+ * so reading it doesn't require looking up the signal by name in the log table.
+ */
+public class SignalHandle {
+    private static final double[] EMPTY_ARRAY = new double[0];
+    final String name, threadedKey, threadedTimestampsKey;
+    boolean isThreaded = false;
+    private double value = 0;
+    private double[]
+            threadedValues = EMPTY_ARRAY,
+            threadedTimestamps = EMPTY_ARRAY;
+
+    SignalHandle(String name) {
+        this.name = name;
+        this.threadedKey = name + "_Threaded";
+        this.threadedTimestampsKey = name + "_ThreadedTimestamps";
+    }
+
+    /**
+     * @return the latest value of the signal
+     */
+    public double getValue() {
+        return value;
+    }
+
+    /**
+     * Gets the values the signal thread sampled since the last robot loop.
+     * Threaded signals use threading to process certain signals separately at a faster rate.
+     *
+     * @return the threaded values of the signal
+     */
+    public double[] getThreadedValues() {
+        return threadedValues;
+    }
+
+    /**
+     * Gets the timestamps of the values returned by {@link #getThreadedValues()}.
+     * Only available for devices that record the timestamps of their threaded signals.
+     *
+     * @return the timestamps of the threaded values in seconds
+     */
+    public double[] getThreadedTimestamps() {
+        return threadedTimestamps;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    void setValue(double value) {
+        this.value = value;
+    }
+
+    void setThreadedValues(double[] threadedValues) {
+        this.threadedValues = threadedValues;
+    }
+
+    void setThreadedTimestamps(double[] threadedTimestamps) {
+        this.threadedTimestamps = threadedTimestamps;
+    }
+
+    /**
+     * Updates the slots of the handle from a log table. Used when the inputs are replayed.
+     *
+     * @param table the table to read the values from
+     */
+    void updateFromTable(LogTable table) {
+        final LogTable.LogValue valueEntry = table.get(name);
+        if (valueEntry != null)
+            value = valueEntry.getDouble();
+        if (!isThreaded)
+            return;
+
+        final LogTable.LogValue threadedValuesEntry = table.get(threadedKey);
+        threadedValues = threadedValuesEntry == null ? EMPTY_ARRAY : threadedValuesEntry.getDoubleArray();
+        final LogTable.LogValue threadedTimestampsEntry = table.get(threadedTimestampsKey);
+        threadedTimestamps = threadedTimestampsEntry == null ? EMPTY_ARRAY : threadedTimestampsEntry.getDoubleArray();
+    }
+}
@@ -3,29 +3,32 @@ package frc.trigon.lib.hardware;
 import org.littletonrobotics.junction.AutoLog;
 import org.littletonrobotics.junction.Logger;
 
-import java.util.Queue;
-import java.util.concurrent.ArrayBlockingQueue;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * A class that represents a base for a signal thread.
  * Signal threads are specialized threads that run at a specific frequency to handle updating signals.
+ * Along with the timestamps, the thread logs health telemetry (achieved frequency, loop jitter, errors and dropped samples per signal) so update frequencies can be tuned from data.
  */
 public class SignalThreadBase extends Thread {
-    protected static final ReentrantLock SIGNALS_REGISTERING_LOCK = new ReentrantLock();
-    protected final Queue<Double> timestamps = new ArrayBlockingQueue<>(100);
+    public static final int SIGNAL_QUEUE_CAPACITY = 100;
+    private static final DoubleRingBuffer[] NO_QUEUES = new DoubleRingBuffer[0];
+    private static final DoubleFrameRingBuffer[] NO_FRAME_QUEUES = new DoubleFrameRingBuffer[0];
+    private static final String[] NO_QUEUE_NAMES = new String[0];
+    protected final ReentrantLock signalsRegisteringLock = new ReentrantLock();
+    protected final DoubleRingBuffer timestamps = new DoubleRingBuffer(SIGNAL_QUEUE_CAPACITY);
+    private final DoubleRingBuffer loopPeriods = new DoubleRingBuffer(SIGNAL_QUEUE_CAPACITY);
+    private final double[] loopJitters = new double[SIGNAL_QUEUE_CAPACITY];
+    private final Map<String, AtomicLong> errorToCount = new ConcurrentHashMap<>();
+    private final AtomicLong timeouts = new AtomicLong();
     private final ThreadInputsAutoLogged threadInputs = new ThreadInputsAutoLogged();
     private final String name;
     protected double threadFrequencyHertz = 50;
-
-    @SuppressWarnings("ConstantConditions")
-    public static double[] queueToDoubleArray(Queue<Double> queue) {
-        final double[] array = new double[queue.size()];
-        for (int i = 0; i < array.length; i++)
-            array[i] = queue.poll();
-
-        return array;
-    }
+    private double lastLoopTimestampSeconds = 0;
 
     /**
      * Creates a new SignalThreadBase.
@@ -48,12 +51,18 @@ public class SignalThreadBase extends Thread {
         this.threadFrequencyHertz = threadFrequencyHertz;
     }
 
+    public double getThreadFrequencyHertz() {
+        return threadFrequencyHertz;
+    }
+
     /**
-     * Updates the latest timestamps, and processes the inputs.
+     * Updates the latest timestamps and the thread's health telemetry, and processes the inputs.
      */
     public void updateLatestTimestamps() {
-        if (!RobotHardwareStats.isReplay())
-            threadInputs.timestamps = queueToDoubleArray(timestamps);
+        if (!RobotHardwareStats.isReplay()) {
+            threadInputs.timestamps = timestamps.drainToArray();
+            updateHealthInputs();
+        }
 
         Logger.processInputs(name, threadInputs);
     }
@@ -67,8 +76,161 @@ public class SignalThreadBase extends Thread {
         return threadInputs.timestamps;
     }
 
+    /**
+     * Records the time at which the thread finished taking a sample. Used to calculate the achieved frequency and the loop jitter.
+     * Should only be called from the thread itself.
+     *
+     * @param timestampSeconds the FPGA timestamp of the sample in seconds
+     */
+    protected void recordLoop(double timestampSeconds) {
+        if (lastLoopTimestampSeconds != 0)
+            loopPeriods.offer(timestampSeconds - lastLoopTimestampSeconds);
+        lastLoopTimestampSeconds = timestampSeconds;
+    }
+
+    /**
+     * Records that the thread timed out while waiting for its signals.
+     */
+    protected void recordTimeout() {
+        timeouts.incrementAndGet();
+    }
+
+    /**
+     * Records that the thread received an error while reading its signals.
+     *
+     * @param errorName the name of the error, such as the status code's name
+     */
+    protected void recordError(String errorName) {
+        errorToCount.computeIfAbsent(errorName, key -> new AtomicLong()).incrementAndGet();
+    }
+
+    /**
+     * Gets the queues that the thread writes its signals' values to. Used to log how many samples each queue dropped.
+     *
+     * @return the thread's queues, ordered by registration
+     */
+    protected DoubleRingBuffer[] getQueues() {
+        return NO_QUEUES;
+    }
+
+    /**
+     * Gets the frame queues that the thread writes its signals' values to. Used to log how many frames each queue dropped, after the regular queues.
+     *
+     * @return the thread's frame queues, ordered by registration
+     */
+    protected DoubleFrameRingBuffer[] getFrameQueues() {
+        return NO_FRAME_QUEUES;
+    }
+
+    /**
+     * Gets the names of the thread's queues, which are logged alongside their dropped samples.
+     *
+     * @return the names of the queues from {@link #getQueues()} followed by the names of the frame queues from {@link #getFrameQueues()}
+     */
+    protected String[] getQueueNames() {
+        return NO_QUEUE_NAMES;
+    }
+
+    private void updateHealthInputs() {
+        updateLoopInputs(loopPeriods.drain(), loopPeriods.getDrainedValues());
+        updateErrorInputs();
+        updateDroppedSamplesInputs();
+    }
+
+    private void updateLoopInputs(int loopCount, double[] periods) {
+        if (loopCount == 0) {
+            threadInputs.achievedFrequencyHertz = 0;
+            return;
+        }
+
+        double totalPeriodSeconds = 0;
+        for (int i = 0; i < loopCount; i++)
+            totalPeriodSeconds += periods[i];
+        threadInputs.achievedFrequencyHertz = loopCount / totalPeriodSeconds;
+
+        Arrays.sort(periods, 0, loopCount);
+        final double medianPeriodSeconds = getPercentile(periods, loopCount, 0.5);
+        for (int i = 0; i < loopCount; i++)
+            loopJitters[i] = Math.abs(periods[i] - medianPeriodSeconds);
+        Arrays.sort(loopJitters, 0, loopCount);
+
+        threadInputs.medianLoopPeriodSeconds = medianPeriodSeconds;
+        threadInputs.loopJitter95thPercentileSeconds = getPercentile(loopJitters, loopCount, 0.95);
+        threadInputs.loopJitter99thPercentileSeconds = getPercentile(loopJitters, loopCount, 0.99);
+        threadInputs.maximumLoopJitterSeconds = loopJitters[loopCount - 1];
+    }
+
+    /**
+     * Updates the error counts. New arrays are only created when a count changes, since the log table keeps a reference to the logged arrays.
+     */
+    private void updateErrorInputs() {
+        threadInputs.timeouts = timeouts.get();
+        if (errorToCount.size() != threadInputs.errorNames.length)
+            threadInputs.errorNames = errorToCount.keySet().toArray(new String[0]);
+        if (threadInputs.errorNames.length == 0)
+            return;
+
+        final long[] errorCounts = new long[threadInputs.errorNames.length];
+        for (int i = 0; i < errorCounts.length; i++)
+            errorCounts[i] = errorToCount.get(threadInputs.errorNames[i]).get();
+        if (!Arrays.equals(errorCounts, threadInputs.errorCounts))
+            threadInputs.errorCounts = errorCounts;
+    }
+
+    /**
+     * Updates the dropped samples of every queue, along with the queues' names.
+     * The names are read first, so a queue that's registered in the middle of the update is only logged once its name is known.
+     */
+    private void updateDroppedSamplesInputs() {
+        threadInputs.droppedTimestamps = timestamps.getDroppedSamples();
+
+        final String[] queueNames = getQueueNames();
+        final DoubleRingBuffer[] queues = getQueues();
+        final DoubleFrameRingBuffer[] frameQueues = getFrameQueues();
+        if (queueNames.length != queues.length + frameQueues.length || !haveDroppedSamplesChanged(queues, frameQueues))
+            return;
+
+        threadInputs.droppedSamplesNames = queueNames;
+        final long[] droppedSamples = new long[queues.length + frameQueues.length];
+        for (int i = 0; i < queues.length; i++)
+            droppedSamples[i] = queues[i].getDroppedSamples();
+        for (int i = 0; i < frameQueues.length; i++)
+            droppedSamples[queues.length + i] = frameQueues[i].getDroppedFrames();
+        threadInputs.droppedSamples = droppedSamples;
+    }
+
+    private boolean haveDroppedSamplesChanged(DoubleRingBuffer[] queues, DoubleFrameRingBuffer[] frameQueues) {
+        if (queues.length + frameQueues.length != threadInputs.droppedSamples.length)
+            return true;
+
+        for (int i = 0; i < queues.length; i++) {
+            if (queues[i].getDroppedSamples() != threadInputs.droppedSamples[i])
+                return true;
+        }
+        for (int i = 0; i < frameQueues.length; i++) {
+            if (frameQueues[i].getDroppedFrames() != threadInputs.droppedSamples[queues.length + i])
+                return true;
+        }
+        return false;
+    }
+
+    private static double getPercentile(double[] sortedValues, int length, double percentile) {
+        return sortedValues[(int) Math.min(length - 1, Math.round(percentile * (length - 1)))];
+    }
+
     @AutoLog
     public static class ThreadInputs {
         public double[] timestamps;
+        public double achievedFrequencyHertz = 0;
+        public double medianLoopPeriodSeconds = 0;
+        public double loopJitter95thPercentileSeconds = 0;
+        public double loopJitter99thPercentileSeconds = 0;
+        public double maximumLoopJitterSeconds = 0;
+        public long timeouts = 0;
+        public String[] errorNames = new String[0];
+        public long[] errorCounts = new long[0];
+        public String[] droppedSamplesNames = new String[0];
+        public long[] droppedSamples = new long[0];
+        public long droppedTimestamps = 0;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,132 @@
+package frc.trigon.lib.hardware.phoenix6;
+
+import com.ctre.phoenix6.controls.ControlRequest;
+import edu.wpi.first.wpilibj.Timer;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A class that suppresses control requests that are identical to the last request sent to a device.
+ * A request is considered identical if it's of the same type and all its public fields are equal, so mutating and resending the same request object is detected too.
+ * Identical requests are still resent once every keep-alive period, so the device keeps receiving its request even if a frame is lost.
+ * The fields are compared into preallocated primitive slots, so checking a request doesn't allocate.
+ */
+public class ControlRequestDeduplicator {
+    private static final Map<Class<?>, Field[]> CLASS_TO_FIELDS = new ConcurrentHashMap<>();
+    private final double keepAlivePeriodSeconds;
+    private Class<?> lastRequestClass = null;
+    private Field[] lastRequestFields = new Field[0];
+    private long[] lastPrimitiveValues = new long[0];
+    private Object[] lastObjectValues = new Object[0];
+    private double lastSendTimestampSeconds = 0;
+    private long sentRequests = 0, suppressedRequests = 0;
+
+    /**
+     * Creates a new ControlRequestDeduplicator.
+     *
+     * @param keepAlivePeriodSeconds the maximum time between two sends of an identical request
+     */
+    public ControlRequestDeduplicator(double keepAlivePeriodSeconds) {
+        this.keepAlivePeriodSeconds = keepAlivePeriodSeconds;
+    }
+
+    /**
+     * Checks whether a request should be sent, and if so, stores it as the last sent request.
+     *
+     * @param request the request that's about to be sent
+     * @return whether the request differs from the last sent request, or the keep-alive period passed since it was sent
+     */
+    public boolean shouldSend(ControlRequest request) {
+        final double currentTimestampSeconds = Timer.getFPGATimestamp();
+        final boolean hasChanged = updateLastRequest(request);
+        if (!hasChanged && currentTimestampSeconds - lastSendTimestampSeconds < keepAlivePeriodSeconds) {
+            suppressedRequests++;
+            return false;
+        }
+
+        lastSendTimestampSeconds = currentTimestampSeconds;
+        sentRequests++;
+        return true;
+    }
+
+    /**
+     * Forgets the last sent request, so the next request is always sent.
+     * Should be called whenever the device is controlled without a request, like when it's stopped.
+     */
+    public void reset() {
+        lastRequestClass = null;
+    }
+
+    public long getSentRequests() {
+        return sentRequests;
+    }
+
+    public long getSuppressedRequests() {
+        return suppressedRequests;
+    }
+
+    /**
+     * Compares the request to the last request, and overwrites the last request's slots with the request's fields.
+     *
+     * @param request the request to compare
+     * @return whether the request differs from the last request
+     */
+    private boolean updateLastRequest(ControlRequest request) {
+        boolean hasChanged = false;
+        if (request.getClass() != lastRequestClass) {
+            setLastRequestClass(request.getClass());
+            hasChanged = true;
+        }
+
+        try {
+            for (int i = 0; i < lastRequestFields.length; i++) {
+                final Field field = lastRequestFields[i];
+                if (field.getType().isPrimitive()) {
+                    final long value = getPrimitiveValue(field, request);
+                    hasChanged |= value != lastPrimitiveValues[i];
+                    lastPrimitiveValues[i] = value;
+                } else {
+                    final Object value = field.get(request);
+                    hasChanged |= !Objects.equals(value, lastObjectValues[i]);
+                    lastObjectValues[i] = value;
+                }
+            }
+        } catch (IllegalAccessException exception) {
+            lastRequestClass = null;
+            return true;
+        }
+
+        return hasChanged;
+    }
+
+    private void setLastRequestClass(Class<?> requestClass) {
+        lastRequestClass = requestClass;
+        lastRequestFields = CLASS_TO_FIELDS.computeIfAbsent(requestClass, ControlRequestDeduplicator::findComparedFields);
+        lastPrimitiveValues = new long[lastRequestFields.length];
+        lastObjectValues = new Object[lastRequestFields.length];
+    }
+
+    private static long getPrimitiveValue(Field field, Object object) throws IllegalAccessException {
+        final Class<?> type = field.getType();
+        if (type == double.class || type == float.class)
+            return Double.doubleToLongBits(field.getDouble(object));
+        if (type == boolean.class)
+            return field.getBoolean(object) ? 1 : 0;
+        return field.getLong(object);
+    }
+
+    private static Field[] findComparedFields(Class<?> requestClass) {
+        final List<Field> comparedFields = new ArrayList<>();
+        for (Field field : requestClass.getFields()) {
+            if (!Modifier.isStatic(field.getModifiers()))
+                comparedFields.add(field);
+        }
+        return comparedFields.toArray(new Field[0]);
+    }
+}
@@ -0,0 +1,206 @@
+package frc.trigon.lib.hardware.phoenix6;
+
+import com.ctre.phoenix6.StatusCode;
+import com.ctre.phoenix6.configs.CustomParamsConfigs;
+import com.ctre.phoenix6.configs.ParentConfiguration;
+import frc.trigon.lib.utilities.FilesHandler;
+import frc.trigon.lib.utilities.JsonHandler;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * A class that skips applying Phoenix 6 configurations that were already applied to a device.
+ * The SHA-256 fingerprint of every successfully applied configuration is persisted under the deploy folder, and a configuration is only applied if its fingerprint differs from the persisted one.
+ * Phoenix 6 devices keep their configuration through power cycles, so warm reboots (like after a brownout) skip the configuration round-trip entirely.
+ * <p>
+ * The persisted fingerprint is tied to the device itself: every applied configuration also writes a marker derived from the fingerprint to the device's custom parameters,
+ * and the marker is read back before a configuration is skipped. A replaced or factory reset device doesn't have the marker, so it's always configured.
+ * Runtime configuration changes (like {@code setBrake}) must call {@link #invalidateFingerprint(String, String, int)}, so the full configuration is applied again on the next boot.
+ * <p>
+ * The marker is written to a private copy of the configuration, so the caller's configuration is never modified, and a configuration may be shared between devices that are configured concurrently.
+ * Inside a {@link #beginBatch()} and {@link #endBatch()} pair (such as a {@link frc.trigon.lib.hardware.DeviceConfigurationBatch}) the fingerprints file is written once at the end, instead of once for every device.
+ * <p>
+ * This is opt-in. While enabled, the custom parameters of the devices are reserved for the marker, and the custom parameters of the applied configurations are ignored.
+ */
+public class Phoenix6ConfigurationFingerprints {
+    private static final String FINGERPRINTS_FILE_NAME = "Phoenix6ConfigurationFingerprints.json";
+    private static boolean IS_SKIPPING_REDUNDANT_CONFIGURATIONS = false;
+    private static Map<String, String> DEVICE_TO_FINGERPRINT = null;
+    private static int BATCH_DEPTH = 0;
+    private static boolean HAS_UNSAVED_FINGERPRINTS = false;
+
+    /**
+     * Sets whether configurations that were already applied to a device should be skipped.
+     * Should be called before applying any configurations.
+     *
+     * @param isSkippingRedundantConfigurations whether redundant configurations should be skipped
+     */
+    public static void setSkippingRedundantConfigurations(boolean isSkippingRedundantConfigurations) {
+        IS_SKIPPING_REDUNDANT_CONFIGURATIONS = isSkippingRedundantConfigurations;
+    }
+
+    /**
+     * @return whether configurations that were already applied to a device are skipped, as set in {@link #setSkippingRedundantConfigurations(boolean)}
+     */
+    public static boolean isSkippingRedundantConfigurations() {
+        return IS_SKIPPING_REDUNDANT_CONFIGURATIONS;
+    }
+
+    /**
+     * Clears all the persisted fingerprints, so every configuration is applied the next time.
+     */
+    public static synchronized void clearFingerprints() {
+        DEVICE_TO_FINGERPRINT = new HashMap<>();
+        saveFingerprints();
+    }
+
+    /**
+     * Removes the persisted fingerprint of a device, so its configuration is applied the next time.
+     * Should be called whenever a configuration is changed on the device outside of {@link #applyConfiguration}, such as its neutral mode.
+     *
+     * @param deviceType the type of the device, such as "TalonFX"
+     * @param canbus     the name of the CAN bus the device is on
+     * @param id         the ID of the device
+     */
+    public static synchronized void invalidateFingerprint(String deviceType, String canbus, int id) {
+        final String deviceKey = generateDeviceKey(deviceType, canbus, id);
+        if (!IS_SKIPPING_REDUNDANT_CONFIGURATIONS || getFingerprint(deviceKey) == null)
+            return;
+
+        DEVICE_TO_FINGERPRINT.remove(deviceKey);
+        saveFingerprints();
+    }
+
+    /**
+     * Starts deferring writes of the fingerprints file until the matching {@link #endBatch()}, so configuring many devices writes the file once.
+     * Batches may be nested, and the file is written when the outermost batch ends.
+     */
+    public static synchronized void beginBatch() {
+        BATCH_DEPTH++;
+    }
+
+    /**
+     * Ends a batch started with {@link #beginBatch()}, and writes the fingerprints file if it's the outermost batch and any fingerprint changed during it.
+     */
+    public static synchronized void endBatch() {
+        BATCH_DEPTH = Math.max(0, BATCH_DEPTH - 1);
+        if (BATCH_DEPTH == 0 && HAS_UNSAVED_FINGERPRINTS)
+            saveFingerprints();
+    }
+
+    /**
+     * Applies a configuration to a device, unless skipping redundant configurations is enabled and the same configuration was already applied to the same device.
+     * The configuration is only skipped if its fingerprint matches the persisted one, and the marker read back from the device matches it too.
+     * The given configuration isn't modified. The marker is written to a copy of it, which is the configuration that's actually applied.
+     *
+     * @param deviceType            the type of the device, such as "TalonFX"
+     * @param canbus                the name of the CAN bus the device is on
+     * @param id                    the ID of the device
+     * @param configuration         the configuration to apply
+     * @param configurationFactory  creates an empty configuration of the same type, such as {@code TalonFXConfiguration::new}, which the configuration is copied into
+     * @param customParamsGetter    gets the custom parameters of a configuration, such as {@code copy -> copy.CustomParams}
+     * @param configurationApplier  applies the configuration to the device and returns its status code
+     * @param customParamsRefresher reads the custom parameters from the device into the given object and returns its status code
+     * @param <T>                   the type of the configuration
+     * @return the status code of applying the configuration. OK if the configuration was skipped
+     */
+    public static <T extends ParentConfiguration> StatusCode applyConfiguration(String deviceType, String canbus, int id, T configuration, Supplier<T> configurationFactory, Function<T, CustomParamsConfigs> customParamsGetter,
+                                                                                Function<T, StatusCode> configurationApplier, Function<CustomParamsConfigs, StatusCode> customParamsRefresher) {
+        if (!IS_SKIPPING_REDUNDANT_CONFIGURATIONS)
+            return configurationApplier.apply(configuration);
+
+        final String deviceKey = generateDeviceKey(deviceType, canbus, id);
+        final byte[] fingerprint = calculateFingerprint(configuration);
+        if (HexFormat.of().formatHex(fingerprint).equals(getFingerprint(deviceKey)) && hasMarker(fingerprint, customParamsRefresher))
+            return StatusCode.OK;
+
+        final T markedConfiguration = configurationFactory.get();
+        if (!markedConfiguration.deserialize(configuration.serialize()).isOK()) {
+            System.out.println("Failed to copy the configuration of " + deviceKey + ", so it's applied without a fingerprint.");
+            return configurationApplier.apply(configuration);
+        }
+
+        final CustomParamsConfigs markedCustomParams = customParamsGetter.apply(markedConfiguration);
+        markedCustomParams.CustomParam0 = getFirstMarkerParam(fingerprint);
+        markedCustomParams.CustomParam1 = getSecondMarkerParam(fingerprint);
+        final StatusCode status = configurationApplier.apply(markedConfiguration);
+        if (status.isOK())
+            putFingerprint(deviceKey, HexFormat.of().formatHex(fingerprint));
+        return status;
+    }
+
+    private static boolean hasMarker(byte[] fingerprint, Function<CustomParamsConfigs, StatusCode> customParamsRefresher) {
+        final CustomParamsConfigs deviceCustomParams = new CustomParamsConfigs();
+        if (!customParamsRefresher.apply(deviceCustomParams).isOK())
+            return false;
+        return deviceCustomParams.CustomParam0 == getFirstMarkerParam(fingerprint) && deviceCustomParams.CustomParam1 == getSecondMarkerParam(fingerprint);
+    }
+
+    /**
+     * The custom parameters are 16 bit signed integers, so the marker is the first 32 bits of the fingerprint, split between the two parameters.
+     */
+    private static int getFirstMarkerParam(byte[] fingerprint) {
+        return (short) ((fingerprint[0] << 8) | (fingerprint[1] & 0xFF));
+    }
+
+    private static int getSecondMarkerParam(byte[] fingerprint) {
+        return (short) ((fingerprint[2] << 8) | (fingerprint[3] & 0xFF));
+    }
+
+    private static byte[] calculateFingerprint(ParentConfiguration configuration) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(configuration.serialize().getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException exception) {
+            throw new IllegalStateException(exception);
+        }
+    }
+
+    private static String generateDeviceKey(String deviceType, String canbus, int id) {
+        return deviceType + "/" + canbus + "/" + id;
+    }
+
+    private static synchronized String getFingerprint(String deviceKey) {
+        if (DEVICE_TO_FINGERPRINT == null)
+            DEVICE_TO_FINGERPRINT = loadFingerprints();
+        return DEVICE_TO_FINGERPRINT.get(deviceKey);
+    }
+
+    private static synchronized void putFingerprint(String deviceKey, String fingerprint) {
+        DEVICE_TO_FINGERPRINT.put(deviceKey, fingerprint);
+        if (BATCH_DEPTH == 0)
+            saveFingerprints();
+        else
+            HAS_UNSAVED_FINGERPRINTS = true;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, String> loadFingerprints() {
+        try {
+            final Map<String, String> fingerprints = JsonHandler.parseJsonStringToObject(FilesHandler.readFile(FilesHandler.DEPLOY_PATH + FINGERPRINTS_FILE_NAME), HashMap.class);
+            if (fingerprints != null)
+                return fingerprints;
+        } catch (NoSuchFileException ignored) {
+        } catch (IOException | RuntimeException exception) {
+            exception.printStackTrace();
+        }
+        return new HashMap<>();
+    }
+
+    private static void saveFingerprints() {
+        HAS_UNSAVED_FINGERPRINTS = false;
+        try {
+            JsonHandler.parseToJsonAndWrite(FINGERPRINTS_FILE_NAME, DEVICE_TO_FINGERPRINT);
+        } catch (IOException exception) {
+            exception.printStackTrace();
+        }
+    }
+}
@@ -1,48 +1,114 @@
 package frc.trigon.lib.hardware.phoenix6;
 
 import com.ctre.phoenix6.BaseStatusSignal;
+import edu.wpi.first.wpilibj.Timer;
 import org.littletonrobotics.junction.LogTable;
+import frc.trigon.lib.hardware.CANBusUtilizationPlanner;
+import frc.trigon.lib.hardware.DoubleRingBuffer;
 import frc.trigon.lib.hardware.InputsBase;
 import frc.trigon.lib.hardware.RobotHardwareStats;
-import frc.trigon.lib.hardware.SignalThreadBase;
+import frc.trigon.lib.hardware.SignalHandle;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Queue;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public class Phoenix6Inputs extends InputsBase {
-    private static BaseStatusSignal[]
-            RIO_SIGNALS = new BaseStatusSignal[0],
-            CANIVORE_SIGNALS = new BaseStatusSignal[0];
-
-    private final boolean isCanivore;
-    private final HashMap<String, Queue<Double>> signalToThreadedQueue = new HashMap<>();
-    private final Phoenix6SignalThread signalThread = Phoenix6SignalThread.getInstance();
-    private int firstInputIndex = -1;
-    private int numberOfInputs = 0;
+    private static final List<SignalRefreshGroup> REFRESH_GROUPS = new CopyOnWriteArrayList<>();
+    private static final Phoenix6InputsPrefetcher PREFETCHER = new Phoenix6InputsPrefetcher(() -> refreshGroups(Timer.getFPGATimestamp()));
+    private static volatile boolean IS_PREFETCHING_INPUTS = false;
+
+    private final String canbus;
+    private final Phoenix6SignalThread signalThread;
+    private BaseStatusSignal[] signals = new BaseStatusSignal[0];
+    private int[] signalPrefetchIndices = new int[0];
+    private SignalHandle[]
+            signalHandles = new SignalHandle[0],
+            threadedSignalHandles = new SignalHandle[0];
+    private DoubleRingBuffer[]
+            threadedQueues = new DoubleRingBuffer[0],
+            threadedTimestampsQueues = new DoubleRingBuffer[0];
 
     /**
      * Creates a new Phoenix6Inputs instance.
+     * Each CAN bus has its own signal thread, so threaded signals are only synchronized with signals from the same bus.
      *
-     * @param name       the name of the instance
-     * @param isCanivore whether the instance is running on a canivore network (CAN FD)
+     * @param name   the name of the instance
+     * @param canbus the name of the CAN bus the device is on. An empty string means the roboRIO's CAN bus, and anything else is a canivore network (CAN FD)
      */
-    public Phoenix6Inputs(String name, boolean isCanivore) {
+    public Phoenix6Inputs(String name, String canbus) {
         super(name);
-        this.isCanivore = isCanivore;
+        this.canbus = canbus;
+        this.signalThread = Phoenix6SignalThread.getInstance(canbus);
+    }
+
+    /**
+     * Sets whether the registered signals should be prefetched by a background thread.
+     * When enabled, the signals are refreshed shortly before every loop starts, and {@link #refreshAllInputs()} only acquires the latest refreshed values instead of refreshing the signals itself.
+     * This takes the refresh off the robot loop, at the cost of the values being up to a couple of milliseconds older when the loop starts.
+     * Threaded signals aren't affected. Should be called before the robot loop starts. Ignored in replay and in accelerated simulation, where the background thread can't follow the simulated clock.
+     *
+     * @param isPrefetchingInputs whether the registered signals should be prefetched
+     */
+    public static void setPrefetchingInputs(boolean isPrefetchingInputs) {
+        if (RobotHardwareStats.isReplay() || RobotHardwareStats.isAcceleratedSimulation())
+            return;
+        if (isPrefetchingInputs && !PREFETCHER.isAlive())
+            PREFETCHER.start();
+        IS_PREFETCHING_INPUTS = isPrefetchingInputs;
     }
 
+    /**
+     * @return whether the registered signals are prefetched by a background thread, as set in {@link #setPrefetchingInputs(boolean)}
+     */
+    public static boolean isPrefetchingInputs() {
+        return IS_PREFETCHING_INPUTS;
+    }
+
+    /**
+     * Refreshes the registered signals. Should be called periodically, before the inputs of the devices are processed.
+     * Signals are grouped by CAN bus and update frequency, and each group is only refreshed once its update period has elapsed.
+     * Slower groups keep serving their latest values in between, which saves JNI calls for signals that can't have new data yet.
+     * If {@link #setPrefetchingInputs(boolean)} was enabled, this acquires the values the background thread prefetched instead, so all the devices read the same snapshot during the loop.
+     */
     public static void refreshAllInputs() {
         if (RobotHardwareStats.isReplay())
             return;
+        if (IS_PREFETCHING_INPUTS) {
+            PREFETCHER.acquireSnapshot();
+            return;
+        }
 
-        BaseStatusSignal.refreshAll(CANIVORE_SIGNALS);
-        BaseStatusSignal.refreshAll(RIO_SIGNALS);
+        PREFETCHER.lockSignals();
+        try {
+            refreshGroups(Timer.getFPGATimestamp());
+        } finally {
+            PREFETCHER.unlockSignals();
+        }
+    }
+
+    /**
+     * Refreshes signals that aren't refreshed through the registered signals, such as the signals of a motor group, and copies their values.
+     * Phoenix 6 returns the same signal object every time a device's signal is requested, so these may be the same objects the prefetcher refreshes,
+     * and they're refreshed and read while holding the prefetcher's lock instead of being read directly.
+     *
+     * @param statusSignals     the signals to refresh
+     * @param destinationValues the array to copy the signals' values to, ordered like the signals
+     */
+    public static void refreshSignals(BaseStatusSignal[] statusSignals, double[] destinationValues) {
+        PREFETCHER.lockSignals();
+        try {
+            BaseStatusSignal.refreshAll(statusSignals);
+            for (int i = 0; i < statusSignals.length; i++)
+                destinationValues[i] = statusSignals[i].getValueAsDouble();
+        } finally {
+            PREFETCHER.unlockSignals();
+        }
     }
 
     @Override
     public void toLog(LogTable table) {
-        if (numberOfInputs == 0 && signalToThreadedQueue.isEmpty())
+        if (signals.length == 0 && threadedQueues.length == 0)
             return;
 
         updateThreadedSignalsToTable(table);
@@ -54,79 +120,128 @@ public class Phoenix6Inputs extends InputsBase {
     /**
      * Registers a threaded signal.
      * Threaded signals use threading to process certain signals separately at a faster rate.
+     * If {@link Phoenix6SignalThread#setRecordingSignalTimestamps(boolean)} was enabled, the timestamp of every sample is recorded as well.
      *
+     * @param signalName           the name of the signal, used to read it from the log in replay
      * @param statusSignal         the threaded signal to register
      * @param updateFrequencyHertz the frequency at which the threaded signal will be updated
+     * @return the handle of the signal
      */
-    public void registerThreadedSignal(BaseStatusSignal statusSignal, double updateFrequencyHertz) {
+    public SignalHandle registerThreadedSignal(String signalName, BaseStatusSignal statusSignal, double updateFrequencyHertz) {
+        final SignalHandle signalHandle = registerSignalHandle(signalName, true);
         if (statusSignal == null || RobotHardwareStats.isReplay())
-            return;
+            return signalHandle;
 
         if (RobotHardwareStats.isSimulation()) // You can't run signals at a high frequency in simulation. A fast thread slows down the simulation.
             updateFrequencyHertz = 50;
         statusSignal.setUpdateFrequency(updateFrequencyHertz);
+        CANBusUtilizationPlanner.registerSignal(canbus, getName() + "/" + signalName, updateFrequencyHertz, false, null);
+
+        final DoubleRingBuffer queue = new DoubleRingBuffer(Phoenix6SignalThread.SIGNAL_QUEUE_CAPACITY);
+        final DoubleRingBuffer timestampsQueue = Phoenix6SignalThread.isRecordingSignalTimestamps() ? new DoubleRingBuffer(Phoenix6SignalThread.SIGNAL_QUEUE_CAPACITY) : null;
+        signalThread.registerSignal(getName() + "/" + signalName, statusSignal, queue, timestampsQueue);
 
-        signalToThreadedQueue.put(statusSignal.getName(), signalThread.registerSignal(statusSignal));
+        threadedSignalHandles = append(threadedSignalHandles, signalHandle);
+        threadedQueues = append(threadedQueues, queue);
+        threadedTimestampsQueues = append(threadedTimestampsQueues, timestampsQueue);
+        return signalHandle;
     }
 
     /**
      * Registers a signal.
      *
+     * @param signalName           the name of the signal, used to read it from the log in replay
      * @param statusSignal         the signal to register
      * @param updateFrequencyHertz the frequency at which the signal will be updated
+     * @return the handle of the signal
      */
-    public void registerSignal(BaseStatusSignal statusSignal, double updateFrequencyHertz) {
+    public SignalHandle registerSignal(String signalName, BaseStatusSignal statusSignal, double updateFrequencyHertz) {
+        final SignalHandle signalHandle = registerSignalHandle(signalName, false);
         if (statusSignal == null || RobotHardwareStats.isReplay())
-            return;
+            return signalHandle;
         if (RobotHardwareStats.isSimulation())
             updateFrequencyHertz = 100; // For some reason, simulation sometimes malfunctions if a status signal isn't updated frequently enough.
 
         statusSignal.setUpdateFrequency(updateFrequencyHertz);
-        if (isCanivore)
-            addSignalToCANivoreSignalsArray(statusSignal);
-        else
-            addSignalToRIOSignalsArray(statusSignal);
+        CANBusUtilizationPlanner.registerSignal(canbus, getName() + "/" + signalName, updateFrequencyHertz, true, statusSignal::setUpdateFrequency);
+        signals = append(signals, statusSignal);
+        signalPrefetchIndices = Arrays.copyOf(signalPrefetchIndices, signalPrefetchIndices.length + 1);
+        signalPrefetchIndices[signalPrefetchIndices.length - 1] = PREFETCHER.addSignal(statusSignal);
+        signalHandles = append(signalHandles, signalHandle);
+        getRefreshGroup(canbus, updateFrequencyHertz).addSignal(statusSignal);
+        return signalHandle;
     }
 
     private void updateThreadedSignalsToTable(LogTable table) {
-        for (Map.Entry<String, Queue<Double>> entry : signalToThreadedQueue.entrySet()) {
-            final double[] queueAsArray = SignalThreadBase.queueToDoubleArray(entry.getValue());
-            table.put(entry.getKey() + "_Threaded", queueAsArray);
-            if (queueAsArray.length == 0)
-                continue;
-            table.put(entry.getKey(), queueAsArray[queueAsArray.length - 1]);
+        for (int i = 0; i < threadedQueues.length; i++) {
+            putThreadedSignal(table, threadedSignalHandles[i], threadedQueues[i].drainToArray());
+            if (threadedTimestampsQueues[i] != null)
+                putThreadedSignalTimestamps(table, threadedSignalHandles[i], threadedTimestampsQueues[i].drainToArray());
         }
     }
 
     private void updateSignalsToTable(LogTable table) {
-        if (firstInputIndex == -1 || numberOfInputs == 0)
-            return;
+        for (int i = 0; i < signals.length; i++)
+            putSignal(table, signalHandles[i], getSignalValue(i));
+    }
 
-        for (int i = firstInputIndex; i < firstInputIndex + numberOfInputs; i++) {
-            final BaseStatusSignal signal = isCanivore ? CANIVORE_SIGNALS[i] : RIO_SIGNALS[i];
-            table.put(signal.getName(), signal.getValueAsDouble());
-        }
+    private double getSignalValue(int signalIndex) {
+        if (IS_PREFETCHING_INPUTS)
+            return PREFETCHER.getValue(signalPrefetchIndices[signalIndex]);
+        return signals[signalIndex].getValueAsDouble();
     }
 
-    private void addSignalToRIOSignalsArray(BaseStatusSignal statusSignal) {
-        if (firstInputIndex == -1)
-            firstInputIndex = RIO_SIGNALS.length;
-        numberOfInputs++;
+    private static void refreshGroups(double currentTimestamp) {
+        for (int i = 0; i < REFRESH_GROUPS.size(); i++)
+            REFRESH_GROUPS.get(i).refreshIfNeeded(currentTimestamp);
+    }
+
+    private static SignalRefreshGroup getRefreshGroup(String canbus, double updateFrequencyHertz) {
+        for (SignalRefreshGroup refreshGroup : REFRESH_GROUPS) {
+            if (refreshGroup.canbus.equals(canbus) && refreshGroup.updateFrequencyHertz == updateFrequencyHertz)
+                return refreshGroup;
+        }
 
-        final BaseStatusSignal[] newSignals = new BaseStatusSignal[RIO_SIGNALS.length + 1];
-        System.arraycopy(RIO_SIGNALS, 0, newSignals, 0, RIO_SIGNALS.length);
-        newSignals[RIO_SIGNALS.length] = statusSignal;
-        RIO_SIGNALS = newSignals;
+        final SignalRefreshGroup refreshGroup = new SignalRefreshGroup(canbus, updateFrequencyHertz);
+        REFRESH_GROUPS.add(refreshGroup);
+        return refreshGroup;
     }
 
-    private void addSignalToCANivoreSignalsArray(BaseStatusSignal statusSignal) {
-        if (firstInputIndex == -1)
-            firstInputIndex = CANIVORE_SIGNALS.length;
-        numberOfInputs++;
+    /**
+     * A group of signals from the same CAN bus that share an update frequency, and are therefore refreshed together.
+     * Groups may be refreshed by the prefetcher thread while signals are registered, so the signals array is replaced rather than mutated, and is volatile so the thread sees the replaced array.
+     */
+    private static class SignalRefreshGroup {
+        private final String canbus;
+        private final double updateFrequencyHertz;
+        private final double updatePeriodSeconds;
+        private volatile BaseStatusSignal[] signals = new BaseStatusSignal[0];
+        private double lastRefreshTimestamp = Double.NEGATIVE_INFINITY;
+
+        private SignalRefreshGroup(String canbus, double updateFrequencyHertz) {
+            this.canbus = canbus;
+            this.updateFrequencyHertz = updateFrequencyHertz;
+            this.updatePeriodSeconds = updateFrequencyHertz <= 0 ? 0 : 1 / updateFrequencyHertz;
+        }
+
+        private void addSignal(BaseStatusSignal statusSignal) {
+            signals = append(signals, statusSignal);
+        }
 
-        final BaseStatusSignal[] newSignals = new BaseStatusSignal[CANIVORE_SIGNALS.length + 1];
-        System.arraycopy(CANIVORE_SIGNALS, 0, newSignals, 0, CANIVORE_SIGNALS.length);
-        newSignals[CANIVORE_SIGNALS.length] = statusSignal;
-        CANIVORE_SIGNALS = newSignals;
+        /**
+         * Refreshes the group's signals if a full update period has passed since the last refresh.
+         * Half a robot loop of tolerance is given, so a group that updates as fast as the robot loop is refreshed every loop despite loop jitter.
+         * Groups with a non-positive frequency (such as signals disabled with 0 hertz) are refreshed every loop, since they have no update period to wait for.
+         *
+         * @param currentTimestamp the current FPGA timestamp in seconds
+         */
+        private void refreshIfNeeded(double currentTimestamp) {
+            final double timeSinceLastRefreshSeconds = currentTimestamp - lastRefreshTimestamp;
+            if (timeSinceLastRefreshSeconds + RobotHardwareStats.getPeriodicTimeSeconds() / 2 < updatePeriodSeconds)
+                return;
+
+            BaseStatusSignal.refreshAll(signals);
+            lastRefreshTimestamp = currentTimestamp;
+        }
     }
-}
\ No newline at end of file
+}
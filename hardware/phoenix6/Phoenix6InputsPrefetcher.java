@@ -0,0 +1,176 @@
+package frc.trigon.lib.hardware.phoenix6;
+
+import com.ctre.phoenix6.BaseStatusSignal;
+import edu.wpi.first.wpilibj.Timer;
+import frc.trigon.lib.hardware.RobotHardwareStats;
+
+import java.util.Arrays;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A thread that refreshes the non-threaded Phoenix 6 signals in the background, shortly before every robot loop starts.
+ * The refreshed values are published as a snapshot, which the robot loop acquires once at the start of every loop so all devices read values from the same refresh.
+ * The snapshot is triple-buffered: the thread always writes to a buffer the robot loop isn't reading, and publishing or acquiring a snapshot never blocks.
+ * <p>
+ * Phoenix 6 status signals aren't thread-safe, so the signals are only refreshed and read while holding the signals lock.
+ * The robot loop only touches the signals itself until the thread publishes the first snapshot of the current signals (on the first loop, and after a signal is added),
+ * and code that refreshes the same signals outside of {@link Phoenix6Inputs} must hold the lock too, using {@link #lockSignals()} and {@link #unlockSignals()}.
+ * The thread sleeps until the robot loop hands it the start of every loop, rather than polling.
+ */
+class Phoenix6InputsPrefetcher extends Thread {
+    /**
+     * How long before the expected start of the next loop the signals are refreshed.
+     */
+    private static final double PREFETCH_LEAD_SECONDS = 0.002;
+    private final Runnable refresher;
+    private final ReentrantLock signalsLock = new ReentrantLock();
+    private final Semaphore loopStarts = new Semaphore(0);
+    private volatile ValuesSnapshot valuesSnapshot = new ValuesSnapshot(new BaseStatusSignal[0]);
+    private volatile double lastLoopStartTimestamp = 0;
+    private double[] acquiredValues = new double[0], synchronousValues = new double[0];
+
+    /**
+     * Creates a new Phoenix6InputsPrefetcher. The thread isn't started until {@link #start()} is called.
+     *
+     * @param refresher refreshes all the registered signals
+     */
+    Phoenix6InputsPrefetcher(Runnable refresher) {
+        this.refresher = refresher;
+        setName("Phoenix6InputsPrefetcher");
+        setDaemon(true);
+    }
+
+    /**
+     * Adds a signal to the snapshot. Until the thread publishes a snapshot that includes the signal, the robot loop refreshes the signals itself.
+     *
+     * @param signal the signal to add
+     * @return the index of the signal's value in the snapshot
+     */
+    synchronized int addSignal(BaseStatusSignal signal) {
+        final BaseStatusSignal[] signals = Arrays.copyOf(valuesSnapshot.signals, valuesSnapshot.signals.length + 1);
+        signals[signals.length - 1] = signal;
+        valuesSnapshot = new ValuesSnapshot(signals);
+        return signals.length - 1;
+    }
+
+    /**
+     * Acquires the latest published snapshot for the current loop, and hands the start of the loop to the thread. Should be called by the robot loop at the start of every loop.
+     * If the thread didn't publish a snapshot of the current signals yet, the signals are refreshed synchronously instead.
+     */
+    void acquireSnapshot() {
+        lastLoopStartTimestamp = Timer.getFPGATimestamp();
+        final ValuesSnapshot snapshot = valuesSnapshot;
+        final double[] publishedValues = snapshot.acquire();
+        acquiredValues = publishedValues != null ? publishedValues : refreshSynchronously(snapshot);
+        loopStarts.release();
+    }
+
+    /**
+     * Gets the value of a signal from the snapshot acquired for the current loop.
+     * If the signal was added after the snapshot was acquired, the signals are refreshed synchronously.
+     *
+     * @param signalIndex the index of the signal's value in the snapshot
+     * @return the value of the signal
+     */
+    double getValue(int signalIndex) {
+        if (signalIndex >= acquiredValues.length)
+            acquiredValues = refreshSynchronously(valuesSnapshot);
+        return acquiredValues[signalIndex];
+    }
+
+    /**
+     * Locks the signals, so they can be refreshed and read without racing the thread. Must be followed by {@link #unlockSignals()}.
+     */
+    void lockSignals() {
+        signalsLock.lock();
+    }
+
+    void unlockSignals() {
+        signalsLock.unlock();
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            loopStarts.acquireUninterruptibly();
+            loopStarts.drainPermits();
+
+            final double timeUntilPrefetch = lastLoopStartTimestamp + RobotHardwareStats.getPeriodicTimeSeconds() - PREFETCH_LEAD_SECONDS - Timer.getFPGATimestamp();
+            if (timeUntilPrefetch > 0)
+                Timer.delay(timeUntilPrefetch);
+
+            final ValuesSnapshot snapshot = valuesSnapshot;
+            signalsLock.lock();
+            try {
+                refresher.run();
+                snapshot.publish();
+            } finally {
+                signalsLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Refreshes the signals on the calling thread, and copies their values to an array only the robot loop uses.
+     *
+     * @param snapshot the snapshot whose signals are read
+     * @return the values of the snapshot's signals
+     */
+    private double[] refreshSynchronously(ValuesSnapshot snapshot) {
+        if (synchronousValues.length != snapshot.signals.length)
+            synchronousValues = new double[snapshot.signals.length];
+
+        signalsLock.lock();
+        try {
+            refresher.run();
+            for (int i = 0; i < snapshot.signals.length; i++)
+                synchronousValues[i] = snapshot.signals[i].getValueAsDouble();
+        } finally {
+            signalsLock.unlock();
+        }
+        return synchronousValues;
+    }
+
+    /**
+     * A triple-buffered snapshot of the values of a fixed set of signals.
+     * The state holds the index of the middle buffer, and whether it holds values that weren't acquired yet.
+     */
+    private static class ValuesSnapshot {
+        private static final int INDEX_MASK = 0b11, FRESH_FLAG = 0b100;
+        private final BaseStatusSignal[] signals;
+        private final double[][] buffers;
+        private final AtomicInteger state = new AtomicInteger(1);
+        private int writeIndex = 0, readIndex = 2;
+        private boolean hasPublished = false;
+
+        private ValuesSnapshot(BaseStatusSignal[] signals) {
+            this.signals = signals;
+            this.buffers = new double[3][signals.length];
+        }
+
+        /**
+         * Writes the current values of the signals to the write buffer, and swaps it with the middle buffer. Only called by the prefetcher thread.
+         */
+        private void publish() {
+            final double[] values = buffers[writeIndex];
+            for (int i = 0; i < signals.length; i++)
+                values[i] = signals[i].getValueAsDouble();
+            writeIndex = state.getAndSet(writeIndex | FRESH_FLAG) & INDEX_MASK;
+        }
+
+        /**
+         * Swaps the read buffer with the middle buffer if the middle buffer holds fresh values. Only called by the robot loop.
+         *
+         * @return the read buffer, or null if nothing was published yet
+         */
+        private double[] acquire() {
+            if ((state.get() & FRESH_FLAG) != 0) {
+                readIndex = state.getAndSet(readIndex) & INDEX_MASK;
+                hasPublished = true;
+            }
+            return hasPublished ? buffers[readIndex] : null;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package frc.trigon.lib.hardware.phoenix6;
+
+import com.ctre.phoenix6.BaseStatusSignal;
+import frc.trigon.lib.hardware.CANBusUtilizationPlanner;
+import frc.trigon.lib.hardware.DoubleFrameRingBuffer;
+import frc.trigon.lib.hardware.RobotHardwareStats;
+import frc.trigon.lib.hardware.SignalThreadBase;
+import org.littletonrobotics.junction.LogTable;
+import org.littletonrobotics.junction.Logger;
+import org.littletonrobotics.junction.inputs.LoggableInputs;
+
+/**
+ * A class that samples a group of Phoenix 6 signals together in the signal thread, such as the drive, steer and gyro signals used for odometry.
+ * Every sample (frame) holds the values of all the group's signals from the same wait, along with a single timestamp,
+ * so the samples of different signals can't be misaligned with each other or with the timestamps.
+ * The frames are stored struct-of-arrays in a single reusable buffer, so reading them doesn't allocate.
+ * All the signals must be on the same CAN bus.
+ */
+public class Phoenix6OdometryFrames implements LoggableInputs {
+    private static final double[] EMPTY_ARRAY = new double[0];
+    private final String name;
+    private final int signalCount;
+    private final DoubleFrameRingBuffer frameQueue;
+    private final double[] values, timestamps;
+    private int frameCount = 0;
+
+    /**
+     * Creates a new Phoenix6OdometryFrames and registers its signals to the signal thread of the CAN bus.
+     * The signals can be retrieved from the devices using their getStatusSignal methods, and may be null in replay.
+     *
+     * @param name                 the name of the frames, used for logging
+     * @param canbus               the name of the CAN bus the signals are on. An empty string means the roboRIO's CAN bus
+     * @param updateFrequencyHertz the frequency at which the signals will be sampled
+     * @param signals              the signals to sample together. The index of each signal is its index in {@link #getValue(int, int)}
+     */
+    public Phoenix6OdometryFrames(String name, String canbus, double updateFrequencyHertz, BaseStatusSignal... signals) {
+        if (signals.length == 0)
+            throw new IllegalArgumentException("Odometry frames \"" + name + "\" must have at least one signal.");
+
+        this.name = name;
+        this.signalCount = signals.length;
+        this.frameQueue = new DoubleFrameRingBuffer(SignalThreadBase.SIGNAL_QUEUE_CAPACITY, signalCount);
+        this.values = new double[SignalThreadBase.SIGNAL_QUEUE_CAPACITY * signalCount];
+        this.timestamps = new double[SignalThreadBase.SIGNAL_QUEUE_CAPACITY];
+        registerSignals(canbus, updateFrequencyHertz, signals);
+    }
+
+    /**
+     * Drains the frames sampled since the last update, and logs them. Should be called periodically, before the frames are read.
+     */
+    public void update() {
+        Logger.processInputs("Odometry/" + name, this);
+    }
+
+    @Override
+    public void toLog(LogTable table) {
+        frameCount = frameQueue.drain(values, SignalThreadBase.SIGNAL_QUEUE_CAPACITY, timestamps);
+        table.put("Values", getCompactValues());
+        table.put("Timestamps", getCompactTimestamps());
+    }
+
+    @Override
+    public void fromLog(LogTable table) {
+        final double[] loggedTimestamps = table.get("Timestamps", EMPTY_ARRAY);
+        final double[] loggedValues = table.get("Values", EMPTY_ARRAY);
+        final int loggedFrameCount = loggedValues.length / signalCount;
+        frameCount = Math.min(Math.min(loggedTimestamps.length, loggedFrameCount), SignalThreadBase.SIGNAL_QUEUE_CAPACITY);
+
+        System.arraycopy(loggedTimestamps, 0, timestamps, 0, frameCount);
+        for (int signal = 0; signal < signalCount; signal++)
+            System.arraycopy(loggedValues, signal * loggedFrameCount, values, signal * SignalThreadBase.SIGNAL_QUEUE_CAPACITY, frameCount);
+    }
+
+    /**
+     * @return the amount of frames sampled since the last update
+     */
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * Gets the value of a signal in a frame.
+     *
+     * @param signalIndex the index of the signal, as given in the constructor
+     * @param frameIndex  the index of the frame, from oldest to newest
+     * @return the value of the signal in the frame
+     */
+    public double getValue(int signalIndex, int frameIndex) {
+        return values[signalIndex * SignalThreadBase.SIGNAL_QUEUE_CAPACITY + frameIndex];
+    }
+
+    /**
+     * Gets the timestamp of a frame.
+     *
+     * @param frameIndex the index of the frame, from oldest to newest
+     * @return the FPGA timestamp of the frame in seconds
+     */
+    public double getTimestamp(int frameIndex) {
+        return timestamps[frameIndex];
+    }
+
+    /**
+     * @return the amount of frames that were dropped because the frames weren't updated frequently enough
+     */
+    public long getDroppedFrames() {
+        return frameQueue.getDroppedFrames();
+    }
+
+    private double[] getCompactValues() {
+        final double[] compactValues = new double[frameCount * signalCount];
+        for (int signal = 0; signal < signalCount; signal++)
+            System.arraycopy(values, signal * SignalThreadBase.SIGNAL_QUEUE_CAPACITY, compactValues, signal * frameCount, frameCount);
+        return compactValues;
+    }
+
+    private double[] getCompactTimestamps() {
+        final double[] compactTimestamps = new double[frameCount];
+        System.arraycopy(timestamps, 0, compactTimestamps, 0, frameCount);
+        return compactTimestamps;
+    }
+
+    private void registerSignals(String canbus, double updateFrequencyHertz, BaseStatusSignal[] signals) {
+        if (RobotHardwareStats.isReplay())
+            return;
+        for (BaseStatusSignal signal : signals) {
+            if (signal == null) {
+                System.out.println("Odometry frames \"" + name + "\" weren't registered, since one of their signals is null. Frames can't skip a signal without shifting the columns of the others.");
+                return;
+            }
+        }
+
+        if (RobotHardwareStats.isSimulation()) // You can't run signals at a high frequency in simulation. A fast thread slows down the simulation.
+            updateFrequencyHertz = 50;
+        BaseStatusSignal.setUpdateFrequencyForAll(updateFrequencyHertz, signals);
+        for (int i = 0; i < signals.length; i++)
+            CANBusUtilizationPlanner.registerSignal(canbus, "Odometry/" + name + "/" + i, updateFrequencyHertz, false, null);
+        Phoenix6SignalThread.getInstance(canbus).registerSignalFrames("Odometry/" + name, signals, frameQueue);
+    }
+}
@@ -17,58 +17,158 @@ import com.ctre.phoenix6.BaseStatusSignal;
 import com.ctre.phoenix6.StatusCode;
 import edu.wpi.first.wpilibj.RobotController;
 import edu.wpi.first.wpilibj.Timer;
+import frc.trigon.lib.hardware.DoubleFrameRingBuffer;
+import frc.trigon.lib.hardware.DoubleRingBuffer;
 import frc.trigon.lib.hardware.RobotHardwareStats;
 import frc.trigon.lib.hardware.SignalThreadBase;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Queue;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * An interface for asynchronously reading high-frequency signals and adding them to queues for Phoenix 6. Used to get values from status signals.
+ * Phoenix 6 can't synchronously wait for signals from different CAN buses, so there is one thread for every CAN bus.
+ * This also prevents a slow bus from stalling the signals of a faster one.
  */
 public class Phoenix6SignalThread extends SignalThreadBase {
-    public static final ReentrantLock QUEUES_LOCK = new ReentrantLock();
-    private final List<Queue<Double>> queues = new ArrayList<>();
-    private BaseStatusSignal[] signals = new BaseStatusSignal[0];
-
-    private static Phoenix6SignalThread INSTANCE = null;
+    private static final String RIO_THREAD_NAME = "Phoenix6SignalThread";
+    private static final Map<String, Phoenix6SignalThread> CANBUS_TO_INSTANCE = new HashMap<>();
+    private static boolean IS_RECORDING_SIGNAL_TIMESTAMPS = false;
+    private volatile SignalsSnapshot signalsSnapshot = new SignalsSnapshot(new BaseStatusSignal[0], new String[0], new DoubleRingBuffer[0], new DoubleRingBuffer[0], new BaseStatusSignal[0][], new String[0], new DoubleFrameRingBuffer[0], new SignalFramesConsumer[0]);
 
+    /**
+     * Gets the signal thread of the roboRIO's CAN bus.
+     *
+     * @return the signal thread of the roboRIO's CAN bus
+     */
     public static Phoenix6SignalThread getInstance() {
-        if (INSTANCE == null)
-            INSTANCE = new Phoenix6SignalThread();
-        return INSTANCE;
+        return getInstance("");
+    }
+
+    /**
+     * Gets the signal thread of the given CAN bus, and creates it if it doesn't exist yet.
+     *
+     * @param canbus the name of the CAN bus. An empty string means the roboRIO's CAN bus
+     * @return the signal thread of the CAN bus
+     */
+    public static Phoenix6SignalThread getInstance(String canbus) {
+        return CANBUS_TO_INSTANCE.computeIfAbsent(canbus, Phoenix6SignalThread::new);
+    }
+
+    /**
+     * Updates the latest timestamps of the signal threads of all CAN buses.
+     * Should be called periodically, before the inputs of the devices are processed.
+     * In accelerated simulation the threads aren't started, and their signals are sampled here instead, once every robot loop on the simulated clock.
+     */
+    public static void updateAllLatestTimestamps() {
+        for (Phoenix6SignalThread signalThread : CANBUS_TO_INSTANCE.values()) {
+            if (RobotHardwareStats.isAcceleratedSimulation())
+                signalThread.sampleSynchronously(signalThread.signalsSnapshot);
+            signalThread.updateLatestTimestamps();
+        }
+    }
+
+    /**
+     * Sets whether threaded signals should record the timestamp of every sample they take.
+     * When enabled, every sample is stamped with the signal's own timestamp (from the CANivore or the device when available) instead of the latency averaged across all signals.
+     * This doesn't add any CAN traffic. Only affects signals registered after this is called, so it should be called before creating any devices.
+     *
+     * @param isRecordingSignalTimestamps whether threaded signals should record their own timestamps
+     */
+    public static void setRecordingSignalTimestamps(boolean isRecordingSignalTimestamps) {
+        IS_RECORDING_SIGNAL_TIMESTAMPS = isRecordingSignalTimestamps;
+    }
+
+    /**
+     * @return whether threaded signals record their own timestamps, as set in {@link #setRecordingSignalTimestamps(boolean)}
+     */
+    public static boolean isRecordingSignalTimestamps() {
+        return IS_RECORDING_SIGNAL_TIMESTAMPS;
     }
 
-    private Phoenix6SignalThread() {
-        super("Phoenix6SignalThread");
-        if (RobotHardwareStats.isReplay())
+    private Phoenix6SignalThread(String canbus) {
+        super(generateThreadName(canbus));
+        if (RobotHardwareStats.isReplay() || RobotHardwareStats.isAcceleratedSimulation())
             return;
-        setName("Phoenix6SignalThread");
+        setName(generateThreadName(canbus));
         setDaemon(true);
         start();
     }
 
+    private static String generateThreadName(String canbus) {
+        if (canbus.isEmpty())
+            return RIO_THREAD_NAME;
+        return RIO_THREAD_NAME + "/" + canbus;
+    }
+
     /**
      * Registers a status signal to be read with a higher frequency.
+     * The signals are published to the thread as an immutable snapshot, so registering never waits for the thread to finish reading the CAN bus.
      *
      * @param signal the signal to register
      * @return the queue that the signal's values will be written to
      */
-    public Queue<Double> registerSignal(BaseStatusSignal signal) {
-        final Queue<Double> queue = new ArrayBlockingQueue<>(100);
-        SignalThreadBase.SIGNALS_REGISTERING_LOCK.lock();
-        QUEUES_LOCK.lock();
+    public DoubleRingBuffer registerSignal(BaseStatusSignal signal) {
+        final DoubleRingBuffer queue = new DoubleRingBuffer(SIGNAL_QUEUE_CAPACITY);
+        registerSignal(signal.getName(), signal, queue, null);
+        return queue;
+    }
+
+    /**
+     * Registers a status signal to be read with a higher frequency, and optionally records the timestamp of every sample.
+     * The timestamps are the signal's own timestamps converted to FPGA time, so they can be used directly for latency compensation.
+     *
+     * @param name            the name of the signal, used to log the queue's dropped samples
+     * @param signal          the signal to register
+     * @param queue           the queue that the signal's values will be written to
+     * @param timestampsQueue the queue that the timestamps of the signal's values will be written to, or null to not record them
+     */
+    public void registerSignal(String name, BaseStatusSignal signal, DoubleRingBuffer queue, DoubleRingBuffer timestampsQueue) {
+        signalsRegisteringLock.lock();
         try {
-            addSignalToSignalsArray(signal);
-            queues.add(queue);
+            signalsSnapshot = signalsSnapshot.withSignal(name, signal, queue, timestampsQueue);
         } finally {
-            QUEUES_LOCK.unlock();
-            SignalThreadBase.SIGNALS_REGISTERING_LOCK.unlock();
+            signalsRegisteringLock.unlock();
+        }
+    }
+
+    /**
+     * Registers a group of status signals that are sampled together into frames.
+     * Every frame holds the values of all the signals from the same sample, so the values of different signals always line up with each other and with the frame's timestamp.
+     * The frame's timestamp is the current time minus the average latency of the group's signals.
+     *
+     * @param name    the name of the frames, used to log the buffer's dropped frames
+     * @param signals the signals to sample together, ordered by their column in the frame
+     * @param frames  the buffer that the frames will be written to
+     */
+    public void registerSignalFrames(String name, BaseStatusSignal[] signals, DoubleFrameRingBuffer frames) {
+        registerSignalFrames(name, signals, frames, (frameSignals, timestampSeconds) -> {
+            for (int i = 0; i < frameSignals.length; i++)
+                frames.putValue(i, frameSignals[i].getValueAsDouble());
+            frames.commitFrame(timestampSeconds);
+        });
+    }
+
+    /**
+     * Registers a group of status signals that are sampled together, and a consumer that processes every sample on the signal thread as soon as it's taken.
+     * This allows processing high-frequency samples (like integrating odometry) at the full sample rate, instead of in batches in the robot loop.
+     * The consumer runs on the signal thread, so it must be fast and must only share data with other threads in a thread-safe way.
+     *
+     * @param signals  the signals to sample together
+     * @param consumer the consumer that processes every sample
+     */
+    public void registerSignalFrames(BaseStatusSignal[] signals, SignalFramesConsumer consumer) {
+        registerSignalFrames(null, signals, null, consumer);
+    }
+
+    private void registerSignalFrames(String name, BaseStatusSignal[] signals, DoubleFrameRingBuffer frames, SignalFramesConsumer consumer) {
+        signalsRegisteringLock.lock();
+        try {
+            signalsSnapshot = signalsSnapshot.withSignalFrames(name, signals, frames, consumer);
+        } finally {
+            signalsRegisteringLock.unlock();
         }
-        return queue;
     }
 
     @Override
@@ -76,53 +176,194 @@ public class Phoenix6SignalThread extends SignalThreadBase {
         Timer.delay(5);
 
         while (true)
-            updateValues();
+            updateValues(signalsSnapshot);
     }
 
-    private void updateValues() {
-        SignalThreadBase.SIGNALS_REGISTERING_LOCK.lock();
-        try {
-            if (BaseStatusSignal.waitForAll(RobotHardwareStats.getPeriodicTimeSeconds(), signals) != StatusCode.OK)
-                return;
-
-            tryToUpdateQueues();
-        } finally {
-            SignalThreadBase.SIGNALS_REGISTERING_LOCK.unlock();
+    private void updateValues(SignalsSnapshot snapshot) {
+        if (snapshot.waitedSignals.length == 0) {
+            Timer.delay(RobotHardwareStats.getPeriodicTimeSeconds());
+            return;
         }
+        final StatusCode status = BaseStatusSignal.waitForAll(RobotHardwareStats.getPeriodicTimeSeconds(), snapshot.waitedSignals);
+        if (status != StatusCode.OK) {
+            recordStatusError(status);
+            return;
+        }
+
+        final double currentTimestamp = RobotController.getFPGATime() / 1e6;
+        recordLoop(currentTimestamp);
+        final double resultTimestamp = currentTimestamp - calculateLatency(snapshot.waitedSignals);
+        updateQueues(snapshot, currentTimestamp, resultTimestamp);
+        updateFrames(snapshot, currentTimestamp);
     }
 
-    private void tryToUpdateQueues() {
-        QUEUES_LOCK.lock();
-        try {
-            final double currentTimestamp = RobotController.getFPGATime() / 1e6;
-            final double resultTimestamp = currentTimestamp - calculateLatency();
-            updateQueues(resultTimestamp);
-        } finally {
-            QUEUES_LOCK.unlock();
+    private void sampleSynchronously(SignalsSnapshot snapshot) {
+        if (snapshot.waitedSignals.length == 0)
+            return;
+        final StatusCode status = BaseStatusSignal.refreshAll(snapshot.waitedSignals);
+        if (status != StatusCode.OK) {
+            recordStatusError(status);
+            return;
         }
+
+        final double currentTimestamp = RobotHardwareStats.getCurrentTimeSeconds();
+        recordLoop(currentTimestamp);
+        updateQueues(snapshot, currentTimestamp, currentTimestamp);
+        updateFrames(snapshot, currentTimestamp);
+    }
+
+    @Override
+    protected DoubleRingBuffer[] getQueues() {
+        return signalsSnapshot.queues;
+    }
+
+    @Override
+    protected DoubleFrameRingBuffer[] getFrameQueues() {
+        return signalsSnapshot.frameQueues;
+    }
+
+    @Override
+    protected String[] getQueueNames() {
+        return signalsSnapshot.allQueueNames;
+    }
+
+    private void recordStatusError(StatusCode status) {
+        if (status == StatusCode.RxTimeout)
+            recordTimeout();
+        else
+            recordError(status.name());
     }
 
-    private double calculateLatency() {
+    private double calculateLatency(BaseStatusSignal[] signals) {
         double totalLatency = 0.0;
         for (BaseStatusSignal signal : signals)
-            totalLatency += signal.getTimestamp().getLatency();
+            totalLatency += getLatency(signal);
 
         return totalLatency / signals.length;
     }
 
-    private void updateQueues(double updateTimestamp) {
-        for (int i = 0; i < signals.length; i += 1) {
-            final BaseStatusSignal signal = signals[i];
-            queues.get(i).offer(signal.getValueAsDouble());
+    /**
+     * Gets the latency of a signal. The latency is measured on the wall clock, so it's ignored in accelerated simulation, where it doesn't match the simulated clock.
+     */
+    private double getLatency(BaseStatusSignal signal) {
+        if (RobotHardwareStats.isAcceleratedSimulation())
+            return 0;
+        return signal.getTimestamp().getLatency();
+    }
+
+    private void updateQueues(SignalsSnapshot snapshot, double currentTimestamp, double updateTimestamp) {
+        for (int i = 0; i < snapshot.signals.length; i++) {
+            final BaseStatusSignal signal = snapshot.signals[i];
+            snapshot.queues[i].offer(signal.getValueAsDouble());
+            if (snapshot.timestampsQueues[i] != null)
+                snapshot.timestampsQueues[i].offer(currentTimestamp - getLatency(signal));
         }
 
         timestamps.offer(updateTimestamp);
     }
 
-    private void addSignalToSignalsArray(BaseStatusSignal statusSignal) {
-        final BaseStatusSignal[] newSignals = new BaseStatusSignal[signals.length + 1];
-        System.arraycopy(signals, 0, newSignals, 0, signals.length);
-        newSignals[signals.length] = statusSignal;
-        signals = newSignals;
+    private void updateFrames(SignalsSnapshot snapshot, double currentTimestamp) {
+        for (int i = 0; i < snapshot.frameConsumers.length; i++) {
+            final BaseStatusSignal[] frameSignals = snapshot.frameSignals[i];
+            snapshot.frameConsumers[i].accept(frameSignals, currentTimestamp - calculateLatency(frameSignals));
+        }
+    }
+
+    /**
+     * An immutable snapshot of the registered signals and the queues their values are written to.
+     * A new snapshot is created whenever a signal is registered, which lets the thread read the signals without locking.
+     */
+    private static class SignalsSnapshot {
+        private final BaseStatusSignal[] signals, waitedSignals;
+        private final String[] queueNames, frameQueueNames, allQueueNames;
+        private final DoubleRingBuffer[] queues, timestampsQueues;
+        private final BaseStatusSignal[][] frameSignals;
+        private final DoubleFrameRingBuffer[] frameQueues;
+        private final SignalFramesConsumer[] frameConsumers;
+
+        private SignalsSnapshot(BaseStatusSignal[] signals, String[] queueNames, DoubleRingBuffer[] queues, DoubleRingBuffer[] timestampsQueues, BaseStatusSignal[][] frameSignals, String[] frameQueueNames, DoubleFrameRingBuffer[] frameQueues, SignalFramesConsumer[] frameConsumers) {
+            this.signals = signals;
+            this.queueNames = queueNames;
+            this.queues = queues;
+            this.timestampsQueues = timestampsQueues;
+            this.frameSignals = frameSignals;
+            this.frameQueueNames = frameQueueNames;
+            this.frameQueues = frameQueues;
+            this.frameConsumers = frameConsumers;
+            this.waitedSignals = calculateWaitedSignals(signals, frameSignals);
+            this.allQueueNames = Arrays.copyOf(queueNames, queueNames.length + frameQueueNames.length);
+            System.arraycopy(frameQueueNames, 0, allQueueNames, queueNames.length, frameQueueNames.length);
+        }
+
+        private SignalsSnapshot withSignal(String name, BaseStatusSignal signal, DoubleRingBuffer queue, DoubleRingBuffer timestampsQueue) {
+            return new SignalsSnapshot(
+                    append(signals, signal),
+                    append(queueNames, name),
+                    append(queues, queue),
+                    append(timestampsQueues, timestampsQueue),
+                    frameSignals,
+                    frameQueueNames,
+                    frameQueues,
+                    frameConsumers
+            );
+        }
+
+        /**
+         * Adds a group of frame signals. The frame queue and its name are only tracked for the dropped frames telemetry, and may be null if the frames are consumed directly.
+         */
+        private SignalsSnapshot withSignalFrames(String name, BaseStatusSignal[] newFrameSignals, DoubleFrameRingBuffer frames, SignalFramesConsumer consumer) {
+            return new SignalsSnapshot(
+                    signals,
+                    queueNames,
+                    queues,
+                    timestampsQueues,
+                    append(frameSignals, newFrameSignals.clone()),
+                    frames == null ? frameQueueNames : append(frameQueueNames, name),
+                    frames == null ? frameQueues : append(frameQueues, frames),
+                    append(frameConsumers, consumer)
+            );
+        }
+
+        /**
+         * Calculates the signals the thread should wait for, which are the individually registered signals and the signals of all frames, without duplicates.
+         */
+        private static BaseStatusSignal[] calculateWaitedSignals(BaseStatusSignal[] signals, BaseStatusSignal[][] frameSignals) {
+            BaseStatusSignal[] waitedSignals = signals;
+            for (BaseStatusSignal[] currentFrameSignals : frameSignals) {
+                for (BaseStatusSignal signal : currentFrameSignals) {
+                    if (!contains(waitedSignals, signal))
+                        waitedSignals = append(waitedSignals, signal);
+                }
+            }
+            return waitedSignals;
+        }
+
+        private static boolean contains(BaseStatusSignal[] signals, BaseStatusSignal signal) {
+            for (BaseStatusSignal currentSignal : signals) {
+                if (currentSignal == signal)
+                    return true;
+            }
+            return false;
+        }
+
+        private static <T> T[] append(T[] array, T element) {
+            final T[] newArray = Arrays.copyOf(array, array.length + 1);
+            newArray[array.length] = element;
+            return newArray;
+        }
+    }
+
+    /**
+     * A consumer of samples of a group of signals, called on the signal thread.
+     */
+    @FunctionalInterface
+    public interface SignalFramesConsumer {
+        /**
+         * Processes a sample. The signals hold the values of the sample until the next sample is taken.
+         *
+         * @param signals          the signals of the group, ordered like they were registered
+         * @param timestampSeconds the FPGA timestamp of the sample in seconds, compensated for the average latency of the signals
+         */
+        void accept(BaseStatusSignal[] signals, double timestampSeconds);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,328 @@
+package frc.trigon.lib.hardware.phoenix6;
+
+import com.ctre.phoenix6.BaseStatusSignal;
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import frc.trigon.lib.hardware.CANBusUtilizationPlanner;
+import frc.trigon.lib.hardware.DoubleFrameRingBuffer;
+import frc.trigon.lib.hardware.RobotHardwareStats;
+import frc.trigon.lib.hardware.SignalThreadBase;
+import org.ejml.simple.SimpleMatrix;
+import org.littletonrobotics.junction.LogTable;
+import org.littletonrobotics.junction.Logger;
+import org.littletonrobotics.junction.inputs.LoggableInputs;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A class that integrates swerve odometry inside the signal thread, at the full sample rate of the drive, steer and gyro signals.
+ * Every sample is integrated as soon as it's taken, and the resulting pose is published along with its timestamp.
+ * The robot loop drains the published poses into a history that can be read or interpolated, instead of integrating arrays of samples in batches.
+ * The integrated poses are logged, so in replay they're read from the log rather than integrated again.
+ * All the signals must be on the same CAN bus.
+ */
+public class Phoenix6SwerveOdometry implements LoggableInputs {
+    public static final int HISTORY_CAPACITY = 500;
+    private static final double[] EMPTY_ARRAY = new double[0];
+    private final String name;
+    private final int moduleCount;
+    private final double wheelRadiusMeters;
+    private final double[][] forwardKinematics;
+    private final DoubleFrameRingBuffer poseQueue = new DoubleFrameRingBuffer(SignalThreadBase.SIGNAL_QUEUE_CAPACITY, 4);
+    private final AtomicReference<PendingReset> pendingReset = new AtomicReference<>();
+    private final double[]
+            drainedPoses = new double[SignalThreadBase.SIGNAL_QUEUE_CAPACITY * 4],
+            drainedTimestamps = new double[SignalThreadBase.SIGNAL_QUEUE_CAPACITY];
+    private final double[]
+            historyX = new double[HISTORY_CAPACITY],
+            historyY = new double[HISTORY_CAPACITY],
+            historyRotation = new double[HISTORY_CAPACITY],
+            historyTimestamps = new double[HISTORY_CAPACITY];
+    private int historyStart = 0, historySize = 0, drainedPoseCount = 0, resetGeneration = 0;
+    private double resetTimestampSeconds = Double.NEGATIVE_INFINITY;
+
+    private final double[] lastDriveDistancesMeters;
+    private boolean hasIntegrated = false;
+    private int integrationResetGeneration = 0;
+    private double xMeters = 0, yMeters = 0, rotationRadians = 0, yawOffsetRadians = 0;
+
+    /**
+     * Creates a new Phoenix6SwerveOdometry and registers its signals to the signal thread of the CAN bus.
+     * The signals can be retrieved from the devices using their getStatusSignal methods, and may be null in replay.
+     *
+     * @param name                 the name of the odometry, used for logging
+     * @param canbus               the name of the CAN bus the signals are on. An empty string means the roboRIO's CAN bus
+     * @param updateFrequencyHertz the frequency at which the signals will be sampled and integrated
+     * @param moduleLocations      the locations of the modules relative to the center of the robot
+     * @param wheelRadiusMeters    the radius of the drive wheels in meters
+     * @param drivePositionSignals the position signals of the drive motors in wheel rotations, ordered like the module locations
+     * @param steerPositionSignals the position signals of the steer motors or encoders in module rotations, ordered like the module locations
+     * @param yawSignal            the yaw signal of the gyro in degrees
+     */
+    public Phoenix6SwerveOdometry(String name, String canbus, double updateFrequencyHertz, Translation2d[] moduleLocations, double wheelRadiusMeters,
+                                  BaseStatusSignal[] drivePositionSignals, BaseStatusSignal[] steerPositionSignals, BaseStatusSignal yawSignal) {
+        if (drivePositionSignals.length != moduleLocations.length || steerPositionSignals.length != moduleLocations.length)
+            throw new IllegalArgumentException("Odometry \"" + name + "\" must have a drive and a steer signal for every module.");
+
+        this.name = name;
+        this.moduleCount = moduleLocations.length;
+        this.wheelRadiusMeters = wheelRadiusMeters;
+        this.forwardKinematics = calculateForwardKinematics(moduleLocations);
+        this.lastDriveDistancesMeters = new double[moduleCount];
+        registerSignals(canbus, updateFrequencyHertz, drivePositionSignals, steerPositionSignals, yawSignal);
+    }
+
+    /**
+     * Drains the poses integrated since the last update into the history, and logs them. Should be called periodically, before the pose is read.
+     * Poses that were integrated before the last reset was applied are dropped, so a reset is never undone by poses that were still queued.
+     */
+    public void update() {
+        Logger.processInputs("Odometry/" + name, this);
+        for (int i = 0; i < drainedPoseCount; i++) {
+            if ((int) drainedPoses[3 * SignalThreadBase.SIGNAL_QUEUE_CAPACITY + i] != resetGeneration || drainedTimestamps[i] <= resetTimestampSeconds)
+                continue;
+            addToHistory(drainedPoses[i], drainedPoses[SignalThreadBase.SIGNAL_QUEUE_CAPACITY + i], drainedPoses[2 * SignalThreadBase.SIGNAL_QUEUE_CAPACITY + i], drainedTimestamps[i]);
+        }
+    }
+
+    @Override
+    public void toLog(LogTable table) {
+        drainedPoseCount = poseQueue.drain(drainedPoses, SignalThreadBase.SIGNAL_QUEUE_CAPACITY, drainedTimestamps);
+        table.put("XMeters", copyDrainedColumn(0));
+        table.put("YMeters", copyDrainedColumn(1));
+        table.put("RotationRadians", copyDrainedColumn(2));
+        table.put("ResetGenerations", copyDrainedColumn(3));
+        table.put("Timestamps", copyDrainedTimestamps());
+    }
+
+    @Override
+    public void fromLog(LogTable table) {
+        final double[] loggedTimestamps = table.get("Timestamps", EMPTY_ARRAY);
+        final double[] loggedX = table.get("XMeters", EMPTY_ARRAY);
+        final double[] loggedY = table.get("YMeters", EMPTY_ARRAY);
+        final double[] loggedRotation = table.get("RotationRadians", EMPTY_ARRAY);
+        final double[] loggedResetGenerations = table.get("ResetGenerations", EMPTY_ARRAY);
+        drainedPoseCount = Math.min(Math.min(loggedTimestamps.length, SignalThreadBase.SIGNAL_QUEUE_CAPACITY), Math.min(loggedX.length, Math.min(loggedY.length, Math.min(loggedRotation.length, loggedResetGenerations.length))));
+
+        System.arraycopy(loggedTimestamps, 0, drainedTimestamps, 0, drainedPoseCount);
+        System.arraycopy(loggedX, 0, drainedPoses, 0, drainedPoseCount);
+        System.arraycopy(loggedY, 0, drainedPoses, SignalThreadBase.SIGNAL_QUEUE_CAPACITY, drainedPoseCount);
+        System.arraycopy(loggedRotation, 0, drainedPoses, 2 * SignalThreadBase.SIGNAL_QUEUE_CAPACITY, drainedPoseCount);
+        System.arraycopy(loggedResetGenerations, 0, drainedPoses, 3 * SignalThreadBase.SIGNAL_QUEUE_CAPACITY, drainedPoseCount);
+    }
+
+    /**
+     * Resets the pose. The pose history is replaced with the reset pose right away, stamped with the current time.
+     * The signal thread applies the reset before integrating the next sample, and any pose it integrated before that is dropped.
+     *
+     * @param pose the pose to reset to
+     */
+    public void resetPose(Pose2d pose) {
+        resetGeneration++;
+        resetTimestampSeconds = Logger.getTimestamp() / 1e6;
+        pendingReset.set(new PendingReset(pose, resetGeneration));
+
+        historyStart = 0;
+        historySize = 0;
+        addToHistory(pose.getX(), pose.getY(), pose.getRotation().getRadians(), resetTimestampSeconds);
+    }
+
+    /**
+     * @return the latest integrated pose, the reset pose if none was integrated since the last reset, or the origin if the odometry was never reset or integrated
+     */
+    public Pose2d getLatestPose() {
+        if (historySize == 0)
+            return new Pose2d();
+        final int latestIndex = getHistoryIndex(historySize - 1);
+        return new Pose2d(historyX[latestIndex], historyY[latestIndex], new Rotation2d(historyRotation[latestIndex]));
+    }
+
+    /**
+     * Gets the pose at a given time by interpolating between the two closest poses in the history.
+     * Times before the oldest pose or after the latest pose are clamped to them.
+     *
+     * @param timestampSeconds the FPGA timestamp in seconds
+     * @return the interpolated pose, or the origin if the odometry was never reset or integrated
+     */
+    public Pose2d getPoseAt(double timestampSeconds) {
+        if (historySize == 0)
+            return new Pose2d();
+
+        int newerPosition = historySize - 1;
+        while (newerPosition > 0 && historyTimestamps[getHistoryIndex(newerPosition - 1)] >= timestampSeconds)
+            newerPosition--;
+        final int newerIndex = getHistoryIndex(newerPosition);
+        if (newerPosition == 0 || historyTimestamps[newerIndex] <= timestampSeconds)
+            return new Pose2d(historyX[newerIndex], historyY[newerIndex], new Rotation2d(historyRotation[newerIndex]));
+
+        final int olderIndex = getHistoryIndex(newerPosition - 1);
+        final double t = (timestampSeconds - historyTimestamps[olderIndex]) / (historyTimestamps[newerIndex] - historyTimestamps[olderIndex]);
+        final double rotationDifference = MathUtil.angleModulus(historyRotation[newerIndex] - historyRotation[olderIndex]);
+        return new Pose2d(
+                MathUtil.interpolate(historyX[olderIndex], historyX[newerIndex], t),
+                MathUtil.interpolate(historyY[olderIndex], historyY[newerIndex], t),
+                new Rotation2d(historyRotation[olderIndex] + rotationDifference * t)
+        );
+    }
+
+    /**
+     * @return the amount of poses that were dropped because the odometry wasn't updated frequently enough
+     */
+    public long getDroppedPoses() {
+        return poseQueue.getDroppedFrames();
+    }
+
+    /**
+     * Integrates a single sample. Called on the signal thread, so it only uses primitive fields that aren't shared with the robot loop.
+     *
+     * @param signals          the drive position signals, then the steer position signals, then the yaw signal
+     * @param timestampSeconds the timestamp of the sample
+     */
+    private void integrateSample(BaseStatusSignal[] signals, double timestampSeconds) {
+        final double yawRadians = Math.toRadians(signals[2 * moduleCount].getValueAsDouble());
+        final PendingReset reset = pendingReset.getAndSet(null);
+        if (reset != null) {
+            xMeters = reset.pose().getX();
+            yMeters = reset.pose().getY();
+            yawOffsetRadians = reset.pose().getRotation().getRadians() - yawRadians;
+            integrationResetGeneration = reset.generation();
+        }
+
+        double twistX = 0, twistY = 0;
+        for (int i = 0; i < moduleCount; i++) {
+            final double driveDistanceMeters = signals[i].getValueAsDouble() * 2 * Math.PI * wheelRadiusMeters;
+            final double steerAngleRadians = signals[moduleCount + i].getValueAsDouble() * 2 * Math.PI;
+            final double deltaMeters = hasIntegrated ? driveDistanceMeters - lastDriveDistancesMeters[i] : 0;
+            lastDriveDistancesMeters[i] = driveDistanceMeters;
+
+            final double deltaX = deltaMeters * Math.cos(steerAngleRadians), deltaY = deltaMeters * Math.sin(steerAngleRadians);
+            twistX += forwardKinematics[0][2 * i] * deltaX + forwardKinematics[0][2 * i + 1] * deltaY;
+            twistY += forwardKinematics[1][2 * i] * deltaX + forwardKinematics[1][2 * i + 1] * deltaY;
+        }
+
+        final double newRotationRadians = yawRadians + yawOffsetRadians;
+        if (hasIntegrated && reset == null)
+            applyTwist(twistX, twistY, newRotationRadians - rotationRadians);
+        rotationRadians = newRotationRadians;
+        hasIntegrated = true;
+
+        poseQueue.putValue(0, xMeters);
+        poseQueue.putValue(1, yMeters);
+        poseQueue.putValue(2, rotationRadians);
+        poseQueue.putValue(3, integrationResetGeneration);
+        poseQueue.commitFrame(timestampSeconds);
+    }
+
+    /**
+     * Applies a twist to the pose, like {@link Pose2d#exp(edu.wpi.first.math.geometry.Twist2d)} but without allocating.
+     */
+    private void applyTwist(double twistX, double twistY, double twistRotationRadians) {
+        final double s, c;
+        if (Math.abs(twistRotationRadians) < 1e-9) {
+            s = 1 - twistRotationRadians * twistRotationRadians / 6;
+            c = twistRotationRadians / 2;
+        } else {
+            s = Math.sin(twistRotationRadians) / twistRotationRadians;
+            c = (1 - Math.cos(twistRotationRadians)) / twistRotationRadians;
+        }
+
+        final double relativeX = twistX * s - twistY * c, relativeY = twistX * c + twistY * s;
+        final double cos = Math.cos(rotationRadians), sin = Math.sin(rotationRadians);
+        xMeters += relativeX * cos - relativeY * sin;
+        yMeters += relativeX * sin + relativeY * cos;
+    }
+
+    private void addToHistory(double x, double y, double rotation, double timestamp) {
+        final int index;
+        if (historySize < HISTORY_CAPACITY) {
+            index = getHistoryIndex(historySize);
+            historySize++;
+        } else {
+            index = historyStart;
+            historyStart = (historyStart + 1) % HISTORY_CAPACITY;
+        }
+
+        historyX[index] = x;
+        historyY[index] = y;
+        historyRotation[index] = rotation;
+        historyTimestamps[index] = timestamp;
+    }
+
+    private int getHistoryIndex(int position) {
+        return (historyStart + position) % HISTORY_CAPACITY;
+    }
+
+    private double[] copyDrainedColumn(int column) {
+        final double[] values = new double[drainedPoseCount];
+        System.arraycopy(drainedPoses, column * SignalThreadBase.SIGNAL_QUEUE_CAPACITY, values, 0, drainedPoseCount);
+        return values;
+    }
+
+    private double[] copyDrainedTimestamps() {
+        final double[] timestamps = new double[drainedPoseCount];
+        System.arraycopy(drainedTimestamps, 0, timestamps, 0, drainedPoseCount);
+        return timestamps;
+    }
+
+    private void registerSignals(String canbus, double updateFrequencyHertz, BaseStatusSignal[] drivePositionSignals, BaseStatusSignal[] steerPositionSignals, BaseStatusSignal yawSignal) {
+        if (RobotHardwareStats.isReplay())
+            return;
+
+        final BaseStatusSignal[] signals = new BaseStatusSignal[2 * moduleCount + 1];
+        System.arraycopy(drivePositionSignals, 0, signals, 0, moduleCount);
+        System.arraycopy(steerPositionSignals, 0, signals, moduleCount, moduleCount);
+        signals[2 * moduleCount] = yawSignal;
+        for (BaseStatusSignal signal : signals) {
+            if (signal == null)
+                return;
+        }
+
+        if (RobotHardwareStats.isSimulation()) // You can't run signals at a high frequency in simulation. A fast thread slows down the simulation.
+            updateFrequencyHertz = 50;
+        BaseStatusSignal.setUpdateFrequencyForAll(updateFrequencyHertz, signals);
+        registerToPlanner(canbus, updateFrequencyHertz);
+        Phoenix6SignalThread.getInstance(canbus).registerSignalFrames(signals, this::integrateSample);
+    }
+
+    /**
+     * Registers the odometry signals to the {@link CANBusUtilizationPlanner}. They're sampled by the signal thread, so they aren't scalable.
+     */
+    private void registerToPlanner(String canbus, double updateFrequencyHertz) {
+        for (int i = 0; i < moduleCount; i++) {
+            CANBusUtilizationPlanner.registerSignal(canbus, "SwerveOdometry/" + name + "/DrivePosition" + i, updateFrequencyHertz, false, null);
+            CANBusUtilizationPlanner.registerSignal(canbus, "SwerveOdometry/" + name + "/SteerPosition" + i, updateFrequencyHertz, false, null);
+        }
+        CANBusUtilizationPlanner.registerSignal(canbus, "SwerveOdometry/" + name + "/Yaw", updateFrequencyHertz, false, null);
+    }
+
+    /**
+     * Calculates the rows of the forward kinematics matrix that convert module displacements to the robot's translation.
+     * This is the pseudo-inverse of the inverse kinematics matrix, like in {@link edu.wpi.first.math.kinematics.SwerveDriveKinematics}.
+     */
+    private static double[][] calculateForwardKinematics(Translation2d[] moduleLocations) {
+        final SimpleMatrix inverseKinematics = new SimpleMatrix(moduleLocations.length * 2, 3);
+        for (int i = 0; i < moduleLocations.length; i++) {
+            inverseKinematics.setRow(i * 2, 0, 1, 0, -moduleLocations[i].getY());
+            inverseKinematics.setRow(i * 2 + 1, 0, 0, 1, moduleLocations[i].getX());
+        }
+
+        final SimpleMatrix forwardKinematics = inverseKinematics.pseudoInverse();
+        final double[][] rows = new double[2][moduleLocations.length * 2];
+        for (int row = 0; row < 2; row++) {
+            for (int column = 0; column < moduleLocations.length * 2; column++)
+                rows[row][column] = forwardKinematics.get(row, column);
+        }
+        return rows;
+    }
+
+    /**
+     * A reset that's waiting to be applied by the signal thread.
+     *
+     * @param pose       the pose to reset to
+     * @param generation the amount of resets so far, including this one. Written into every pose integrated after the reset is applied
+     */
+    private record PendingReset(Pose2d pose, int generation) {
+    }
+}
@@ -2,10 +2,12 @@ package frc.trigon.lib.hardware.phoenix6.cancoder;
 
 
 import com.ctre.phoenix6.BaseStatusSignal;
+import com.ctre.phoenix6.StatusCode;
 import com.ctre.phoenix6.configs.CANcoderConfiguration;
 import com.ctre.phoenix6.hardware.CANcoder;
 import org.littletonrobotics.junction.Logger;
 import frc.trigon.lib.hardware.RobotHardwareStats;
+import frc.trigon.lib.hardware.SignalHandle;
 import frc.trigon.lib.hardware.phoenix6.Phoenix6Inputs;
 import frc.trigon.lib.hardware.phoenix6.cancoder.io.RealCANcoderIO;
 import frc.trigon.lib.hardware.phoenix6.cancoder.io.SimulationCANcoderIO;
@@ -43,7 +45,7 @@ public class CANcoderEncoder {
     public CANcoderEncoder(int id, String encoderName, String canbus) {
         this.encoderName = encoderName;
         this.encoderIO = generateIO(id, canbus);
-        this.encoderInputs = new Phoenix6Inputs(encoderName, !canbus.isEmpty());
+        this.encoderInputs = new Phoenix6Inputs(encoderName, canbus);
         this.id = id;
         encoderIO.optimizeBusUsage();
     }
@@ -85,21 +87,22 @@ public class CANcoderEncoder {
      *
      * @param realConfiguration       configuration to be used in real life
      * @param simulationConfiguration configuration to be used in simulation
+     * @return the status code of applying the configuration
      */
-    public void applyConfigurations(CANcoderConfiguration realConfiguration, CANcoderConfiguration simulationConfiguration) {
+    public StatusCode applyConfigurations(CANcoderConfiguration realConfiguration, CANcoderConfiguration simulationConfiguration) {
         if (RobotHardwareStats.isSimulation())
-            encoderIO.applyConfiguration(simulationConfiguration);
-        else
-            encoderIO.applyConfiguration(realConfiguration);
+            return encoderIO.applyConfiguration(simulationConfiguration);
+        return encoderIO.applyConfiguration(realConfiguration);
     }
 
     /**
      * Applies the configuration to be used both in real life and in simulation.
      *
      * @param simulationAndRealConfiguration the configuration
+     * @return the status code of applying the configuration
      */
-    public void applyConfiguration(CANcoderConfiguration simulationAndRealConfiguration) {
-        encoderIO.applyConfiguration(simulationAndRealConfiguration);
+    public StatusCode applyConfiguration(CANcoderConfiguration simulationAndRealConfiguration) {
+        return encoderIO.applyConfiguration(simulationAndRealConfiguration);
     }
 
     /**
@@ -107,10 +110,12 @@ public class CANcoderEncoder {
      * Having two different configurations allows for tuning encoder behavior in simulation which might not perfectly mimic real life performance.
      *
      * @param realConfiguration the configuration
+     * @return the status code of applying the configuration. Always OK when the configuration isn't applied
      */
-    public void applyRealConfiguration(CANcoderConfiguration realConfiguration) {
-        if (!RobotHardwareStats.isSimulation())
-            encoderIO.applyConfiguration(realConfiguration);
+    public StatusCode applyRealConfiguration(CANcoderConfiguration realConfiguration) {
+        if (RobotHardwareStats.isSimulation())
+            return StatusCode.OK;
+        return encoderIO.applyConfiguration(realConfiguration);
     }
 
     /**
@@ -118,10 +123,12 @@ public class CANcoderEncoder {
      * Having two different configurations allows for tuning encoder behavior in simulation which might not perfectly mimic real life performance.
      *
      * @param simulationConfiguration the configuration
+     * @return the status code of applying the configuration. Always OK when the configuration isn't applied
      */
-    public void applySimulationConfiguration(CANcoderConfiguration simulationConfiguration) {
-        if (RobotHardwareStats.isSimulation())
-            encoderIO.applyConfiguration(simulationConfiguration);
+    public StatusCode applySimulationConfiguration(CANcoderConfiguration simulationConfiguration) {
+        if (!RobotHardwareStats.isSimulation())
+            return StatusCode.OK;
+        return encoderIO.applyConfiguration(simulationConfiguration);
     }
 
     /**
@@ -145,14 +152,26 @@ public class CANcoderEncoder {
         return encoderInputs.getThreadedSignal(signal.name);
     }
 
+    /**
+     * Gets the timestamps of the samples of a threaded signal from the encoder.
+     * Only available when {@link frc.trigon.lib.hardware.phoenix6.Phoenix6SignalThread#setRecordingSignalTimestamps(boolean)} is enabled.
+     *
+     * @param signal the type of threaded signal to get the timestamps of
+     * @return the timestamps of the threaded signal's samples in seconds
+     */
+    public double[] getThreadedSignalTimestamps(CANcoderSignal signal) {
+        return encoderInputs.getThreadedSignalTimestamps(signal.name);
+    }
+
     /**
      * Registers a signal to be updated at a certain frequency.
      *
      * @param signal               the signal to register
      * @param updateFrequencyHertz the frequency at which the signal will be updated
+     * @return the handle of the signal, which can be read without looking the signal up by name
      */
-    public void registerSignal(CANcoderSignal signal, double updateFrequencyHertz) {
-        encoderInputs.registerSignal(encoderSignalToStatusSignal(signal), updateFrequencyHertz);
+    public SignalHandle registerSignal(CANcoderSignal signal, double updateFrequencyHertz) {
+        return encoderInputs.registerSignal(signal.name, encoderSignalToStatusSignal(signal), updateFrequencyHertz);
     }
 
     /**
@@ -161,9 +180,10 @@ public class CANcoderEncoder {
      *
      * @param signal               the signal to register
      * @param updateFrequencyHertz the frequency at which the signal will be updated
+     * @return the handle of the signal, which can be read without looking the signal up by name
      */
-    public void registerThreadedSignal(CANcoderSignal signal, double updateFrequencyHertz) {
-        encoderInputs.registerThreadedSignal(encoderSignalToStatusSignal(signal), updateFrequencyHertz);
+    public SignalHandle registerThreadedSignal(CANcoderSignal signal, double updateFrequencyHertz) {
+        return encoderInputs.registerThreadedSignal(signal.name, encoderSignalToStatusSignal(signal), updateFrequencyHertz);
     }
 
     /**
@@ -175,6 +195,16 @@ public class CANcoderEncoder {
         encoderIO.setPosition(positionRotations);
     }
 
+    /**
+     * Gets the underlying status signal of the encoder. Used by APIs that sample signals directly, like {@link frc.trigon.lib.hardware.phoenix6.Phoenix6OdometryFrames}.
+     *
+     * @param signal the type of signal to get
+     * @return the status signal, or null in replay
+     */
+    public BaseStatusSignal getStatusSignal(CANcoderSignal signal) {
+        return encoderSignalToStatusSignal(signal);
+    }
+
     private BaseStatusSignal encoderSignalToStatusSignal(CANcoderSignal signal) {
         final CANcoder cancoder = encoderIO.getCANcoder();
         if (RobotHardwareStats.isReplay() || cancoder == null)
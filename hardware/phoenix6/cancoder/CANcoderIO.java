@@ -1,5 +1,6 @@
 package frc.trigon.lib.hardware.phoenix6.cancoder;
 
+import com.ctre.phoenix6.StatusCode;
 import com.ctre.phoenix6.configs.CANcoderConfiguration;
 import com.ctre.phoenix6.hardware.CANcoder;
 
@@ -9,7 +10,8 @@ public class CANcoderIO {
     protected void updateEncoder() {
     }
 
-    protected void applyConfiguration(CANcoderConfiguration configuration) {
+    protected StatusCode applyConfiguration(CANcoderConfiguration configuration) {
+        return StatusCode.OK;
     }
 
     protected void optimizeBusUsage() {
@@ -1,20 +1,26 @@
 package frc.trigon.lib.hardware.phoenix6.cancoder.io;
 
 import com.ctre.phoenix6.CANBus;
+import com.ctre.phoenix6.StatusCode;
 import com.ctre.phoenix6.configs.CANcoderConfiguration;
 import com.ctre.phoenix6.hardware.CANcoder;
+import frc.trigon.lib.hardware.phoenix6.Phoenix6ConfigurationFingerprints;
 import frc.trigon.lib.hardware.phoenix6.cancoder.CANcoderIO;
 
 public class RealCANcoderIO extends CANcoderIO {
     private final CANcoder cancoder;
+    private final String canbus;
+    private final int id;
 
     public RealCANcoderIO(int id, String canbus) {
         this.cancoder = new CANcoder(id, new CANBus(canbus));
+        this.canbus = canbus;
+        this.id = id;
     }
 
     @Override
-    public void applyConfiguration(CANcoderConfiguration configuration) {
-        cancoder.getConfigurator().apply(configuration);
+    public StatusCode applyConfiguration(CANcoderConfiguration configuration) {
+        return Phoenix6ConfigurationFingerprints.applyConfiguration("CANcoder", canbus, id, configuration, CANcoderConfiguration::new, copy -> copy.CustomParams, cancoder.getConfigurator()::apply, cancoder.getConfigurator()::refresh);
     }
 
     @Override
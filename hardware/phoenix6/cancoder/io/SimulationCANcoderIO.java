@@ -1,5 +1,6 @@
 package frc.trigon.lib.hardware.phoenix6.cancoder.io;
 
+import com.ctre.phoenix6.StatusCode;
 import com.ctre.phoenix6.configs.CANcoderConfiguration;
 import com.ctre.phoenix6.hardware.CANcoder;
 import com.ctre.phoenix6.signals.SensorDirectionValue;
@@ -34,9 +35,9 @@ public class SimulationCANcoderIO extends CANcoderIO {
     }
 
     @Override
-    public void applyConfiguration(CANcoderConfiguration configuration) {
+    public StatusCode applyConfiguration(CANcoderConfiguration configuration) {
         final CANcoderConfiguration adaptedConfiguration = adaptConfigurationToSimulation(configuration);
-        cancoder.getConfigurator().apply(adaptedConfiguration);
+        return cancoder.getConfigurator().apply(adaptedConfiguration);
     }
 
     @Override
@@ -2,10 +2,12 @@ package frc.trigon.lib.hardware.phoenix6.pigeon2;
 
 
 import com.ctre.phoenix6.BaseStatusSignal;
+import com.ctre.phoenix6.StatusCode;
 import com.ctre.phoenix6.configs.Pigeon2Configuration;
 import com.ctre.phoenix6.hardware.Pigeon2;
 import edu.wpi.first.math.geometry.Rotation2d;
 import frc.trigon.lib.hardware.RobotHardwareStats;
+import frc.trigon.lib.hardware.SignalHandle;
 import frc.trigon.lib.hardware.phoenix6.Phoenix6Inputs;
 import frc.trigon.lib.hardware.phoenix6.pigeon2.io.RealPigeon2IO;
 import frc.trigon.lib.hardware.phoenix6.pigeon2.io.SimulationPigeon2IO;
@@ -42,7 +44,7 @@ public class Pigeon2Gyro {
     public Pigeon2Gyro(int id, String gyroName, String canbus) {
         this.gyroName = gyroName;
         this.gyroIO = generateIO(id, canbus);
-        this.gyroInputs = new Phoenix6Inputs(gyroName, !canbus.isEmpty());
+        this.gyroInputs = new Phoenix6Inputs(gyroName, canbus);
         this.id = id;
         gyroIO.optimizeBusUsage();
     }
@@ -69,25 +71,26 @@ public class Pigeon2Gyro {
         gyroIO.setSimulationYawVelocitySupplier(yawVelocitySupplierRadiansPerSecond);
     }
 
-    public void applyConfigurations(Pigeon2Configuration realConfiguration, Pigeon2Configuration simulationConfiguration) {
+    public StatusCode applyConfigurations(Pigeon2Configuration realConfiguration, Pigeon2Configuration simulationConfiguration) {
         if (RobotHardwareStats.isSimulation())
-            gyroIO.applyConfiguration(simulationConfiguration);
-        else
-            gyroIO.applyConfiguration(realConfiguration);
+            return gyroIO.applyConfiguration(simulationConfiguration);
+        return gyroIO.applyConfiguration(realConfiguration);
     }
 
-    public void applyConfiguration(Pigeon2Configuration simulationAndRealConfiguration) {
-        gyroIO.applyConfiguration(simulationAndRealConfiguration);
+    public StatusCode applyConfiguration(Pigeon2Configuration simulationAndRealConfiguration) {
+        return gyroIO.applyConfiguration(simulationAndRealConfiguration);
     }
 
-    public void applyRealConfiguration(Pigeon2Configuration realConfiguration) {
-        if (!RobotHardwareStats.isSimulation())
-            gyroIO.applyConfiguration(realConfiguration);
+    public StatusCode applyRealConfiguration(Pigeon2Configuration realConfiguration) {
+        if (RobotHardwareStats.isSimulation())
+            return StatusCode.OK;
+        return gyroIO.applyConfiguration(realConfiguration);
     }
 
-    public void applySimulationConfiguration(Pigeon2Configuration simulationConfiguration) {
-        if (RobotHardwareStats.isSimulation())
-            gyroIO.applyConfiguration(simulationConfiguration);
+    public StatusCode applySimulationConfiguration(Pigeon2Configuration simulationConfiguration) {
+        if (!RobotHardwareStats.isSimulation())
+            return StatusCode.OK;
+        return gyroIO.applyConfiguration(simulationConfiguration);
     }
 
     public void setYaw(Rotation2d currentYaw) {
@@ -102,12 +105,20 @@ public class Pigeon2Gyro {
         return gyroInputs.getThreadedSignal(signal.name);
     }
 
-    public void registerSignal(Pigeon2Signal signal, double updateFrequencyHertz) {
-        gyroInputs.registerSignal(pigeon2SignalToStatusSignal(signal), updateFrequencyHertz);
+    public double[] getThreadedSignalTimestamps(Pigeon2Signal signal) {
+        return gyroInputs.getThreadedSignalTimestamps(signal.name);
+    }
+
+    public SignalHandle registerSignal(Pigeon2Signal signal, double updateFrequencyHertz) {
+        return gyroInputs.registerSignal(signal.name, pigeon2SignalToStatusSignal(signal), updateFrequencyHertz);
+    }
+
+    public SignalHandle registerThreadedSignal(Pigeon2Signal signal, double updateFrequencyHertz) {
+        return gyroInputs.registerThreadedSignal(signal.name, pigeon2SignalToStatusSignal(signal), updateFrequencyHertz);
     }
 
-    public void registerThreadedSignal(Pigeon2Signal signal, double updateFrequencyHertz) {
-        gyroInputs.registerThreadedSignal(pigeon2SignalToStatusSignal(signal), updateFrequencyHertz);
+    public BaseStatusSignal getStatusSignal(Pigeon2Signal signal) {
+        return pigeon2SignalToStatusSignal(signal);
     }
 
     private BaseStatusSignal pigeon2SignalToStatusSignal(Pigeon2Signal signal) {
@@ -1,5 +1,6 @@
 package frc.trigon.lib.hardware.phoenix6.pigeon2;
 
+import com.ctre.phoenix6.StatusCode;
 import com.ctre.phoenix6.configs.Pigeon2Configuration;
 import com.ctre.phoenix6.hardware.Pigeon2;
 import edu.wpi.first.math.geometry.Rotation2d;
@@ -10,7 +11,8 @@ public class Pigeon2IO {
     protected void updateGyro() {
     }
 
-    protected void applyConfiguration(Pigeon2Configuration configuration) {
+    protected StatusCode applyConfiguration(Pigeon2Configuration configuration) {
+        return StatusCode.OK;
     }
 
     protected void optimizeBusUsage() {
@@ -1,21 +1,27 @@
 package frc.trigon.lib.hardware.phoenix6.pigeon2.io;
 
 import com.ctre.phoenix6.CANBus;
+import com.ctre.phoenix6.StatusCode;
 import com.ctre.phoenix6.configs.Pigeon2Configuration;
 import com.ctre.phoenix6.hardware.Pigeon2;
 import edu.wpi.first.math.geometry.Rotation2d;
+import frc.trigon.lib.hardware.phoenix6.Phoenix6ConfigurationFingerprints;
 import frc.trigon.lib.hardware.phoenix6.pigeon2.Pigeon2IO;
 
 public class RealPigeon2IO extends Pigeon2IO {
     private final Pigeon2 pigeon2;
+    private final String canbus;
+    private final int id;
 
     public RealPigeon2IO(int id, String canbus) {
         this.pigeon2 = new Pigeon2(id, new CANBus(canbus));
+        this.canbus = canbus;
+        this.id = id;
     }
 
     @Override
-    public void applyConfiguration(Pigeon2Configuration configuration) {
-        pigeon2.getConfigurator().apply(configuration);
+    public StatusCode applyConfiguration(Pigeon2Configuration configuration) {
+        return Phoenix6ConfigurationFingerprints.applyConfiguration("Pigeon2", canbus, id, configuration, Pigeon2Configuration::new, copy -> copy.CustomParams, pigeon2.getConfigurator()::apply, pigeon2.getConfigurator()::refresh);
     }
 
     @Override
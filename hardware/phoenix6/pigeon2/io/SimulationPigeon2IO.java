@@ -1,5 +1,6 @@
 package frc.trigon.lib.hardware.phoenix6.pigeon2.io;
 
+import com.ctre.phoenix6.StatusCode;
 import com.ctre.phoenix6.configs.Pigeon2Configuration;
 import com.ctre.phoenix6.hardware.Pigeon2;
 import com.ctre.phoenix6.sim.Pigeon2SimState;
@@ -41,8 +42,8 @@ public class SimulationPigeon2IO extends Pigeon2IO {
     }
 
     @Override
-    public void applyConfiguration(Pigeon2Configuration configuration) {
-        pigeon2.getConfigurator().apply(configuration);
+    public StatusCode applyConfiguration(Pigeon2Configuration configuration) {
+        return pigeon2.getConfigurator().apply(configuration);
     }
 
     @Override
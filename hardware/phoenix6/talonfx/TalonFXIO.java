@@ -1,5 +1,6 @@
 package frc.trigon.lib.hardware.phoenix6.talonfx;
 
+import com.ctre.phoenix6.StatusCode;
 import com.ctre.phoenix6.configs.TalonFXConfiguration;
 import com.ctre.phoenix6.controls.ControlRequest;
 import com.ctre.phoenix6.hardware.TalonFX;
@@ -15,7 +16,8 @@ public class TalonFXIO {
     protected void setPosition(double positionRotations) {
     }
 
-    protected void applyConfiguration(TalonFXConfiguration configuration) {
+    protected StatusCode applyConfiguration(TalonFXConfiguration configuration) {
+        return StatusCode.OK;
     }
 
     protected void optimizeBusUsage() {
@@ -1,11 +1,21 @@
 package frc.trigon.lib.hardware.phoenix6.talonfx;
 
 import com.ctre.phoenix6.BaseStatusSignal;
+import com.ctre.phoenix6.StatusCode;
 import com.ctre.phoenix6.configs.TalonFXConfiguration;
 import com.ctre.phoenix6.controls.ControlRequest;
+import com.ctre.phoenix6.controls.DutyCycleOut;
+import com.ctre.phoenix6.controls.MotionMagicVelocityVoltage;
+import com.ctre.phoenix6.controls.MotionMagicVoltage;
+import com.ctre.phoenix6.controls.PositionVoltage;
+import com.ctre.phoenix6.controls.TorqueCurrentFOC;
+import com.ctre.phoenix6.controls.VelocityVoltage;
+import com.ctre.phoenix6.controls.VoltageOut;
 import com.ctre.phoenix6.hardware.TalonFX;
 import org.littletonrobotics.junction.Logger;
 import frc.trigon.lib.hardware.RobotHardwareStats;
+import frc.trigon.lib.hardware.SignalHandle;
+import frc.trigon.lib.hardware.phoenix6.ControlRequestDeduplicator;
 import frc.trigon.lib.hardware.phoenix6.Phoenix6Inputs;
 import frc.trigon.lib.hardware.phoenix6.talonfx.io.RealTalonFXIO;
 import frc.trigon.lib.hardware.phoenix6.talonfx.io.SimulationTalonFXIO;
@@ -18,10 +28,18 @@ import frc.trigon.lib.hardware.simulation.MotorPhysicsSimulation;
  * It's also fully integrated with AdvantageKit logging.
  */
 public class TalonFXMotor {
-    private final String motorName;
+    private final String motorName, canbus;
     private final TalonFXIO motorIO;
     private final Phoenix6Inputs motorInputs;
     private final int id;
+    private final VoltageOut voltageRequest = new VoltageOut(0);
+    private final DutyCycleOut dutyCycleRequest = new DutyCycleOut(0);
+    private final TorqueCurrentFOC torqueCurrentRequest = new TorqueCurrentFOC(0);
+    private final PositionVoltage positionRequest = new PositionVoltage(0);
+    private final VelocityVoltage velocityRequest = new VelocityVoltage(0);
+    private final MotionMagicVoltage motionMagicPositionRequest = new MotionMagicVoltage(0);
+    private final MotionMagicVelocityVoltage motionMagicVelocityRequest = new MotionMagicVelocityVoltage(0);
+    private ControlRequestDeduplicator controlRequestDeduplicator = null;
 
     /**
      * Creates a new TalonFX motor.
@@ -42,8 +60,9 @@ public class TalonFXMotor {
      */
     public TalonFXMotor(int id, String motorName, String canbus) {
         this.motorName = motorName;
+        this.canbus = canbus;
         this.motorIO = generateIO(id, canbus);
-        this.motorInputs = new Phoenix6Inputs(motorName, !canbus.isEmpty());
+        this.motorInputs = new Phoenix6Inputs(motorName, canbus);
         this.id = id;
         motorIO.optimizeBusUsage();
     }
@@ -55,12 +74,37 @@ public class TalonFXMotor {
         if (RobotHardwareStats.isSimulation())
             motorIO.updateMotor();
         Logger.processInputs("Motors/" + motorName, motorInputs);
+        if (controlRequestDeduplicator != null) {
+            Logger.recordOutput("Motors/" + motorName + "/SentControlRequests", controlRequestDeduplicator.getSentRequests());
+            Logger.recordOutput("Motors/" + motorName + "/SuppressedControlRequests", controlRequestDeduplicator.getSuppressedRequests());
+        }
+    }
+
+    /**
+     * Enables suppressing control requests that are identical to the last request sent to the motor.
+     * Identical requests are still resent once every keep-alive period. The amount of sent and suppressed requests is logged with the motor's inputs.
+     *
+     * @param keepAlivePeriodSeconds the maximum time between two sends of an identical request
+     */
+    public void enableControlRequestDeduplication(double keepAlivePeriodSeconds) {
+        controlRequestDeduplicator = new ControlRequestDeduplicator(keepAlivePeriodSeconds);
+    }
+
+    /**
+     * Disables suppressing identical control requests, so every request is sent to the motor.
+     */
+    public void disableControlRequestDeduplication() {
+        controlRequestDeduplicator = null;
     }
 
     public int getID() {
         return id;
     }
 
+    public String getCanbus() {
+        return canbus;
+    }
+
     /**
      * Sets the physics simulation of the motor. Needed for the motor to be used in simulation with accurate physics.
      *
@@ -76,21 +120,22 @@ public class TalonFXMotor {
      *
      * @param realConfiguration       configuration to be used in real life
      * @param simulationConfiguration configuration to be used in simulation
+     * @return the status code of applying the configuration
      */
-    public void applyConfigurations(TalonFXConfiguration realConfiguration, TalonFXConfiguration simulationConfiguration) {
+    public StatusCode applyConfigurations(TalonFXConfiguration realConfiguration, TalonFXConfiguration simulationConfiguration) {
         if (RobotHardwareStats.isSimulation())
-            motorIO.applyConfiguration(simulationConfiguration);
-        else
-            motorIO.applyConfiguration(realConfiguration);
+            return motorIO.applyConfiguration(simulationConfiguration);
+        return motorIO.applyConfiguration(realConfiguration);
     }
 
     /**
      * Applies the configuration to be used both in real life and in simulation.
      *
      * @param simulationAndRealConfiguration the configuration
+     * @return the status code of applying the configuration
      */
-    public void applyConfiguration(TalonFXConfiguration simulationAndRealConfiguration) {
-        motorIO.applyConfiguration(simulationAndRealConfiguration);
+    public StatusCode applyConfiguration(TalonFXConfiguration simulationAndRealConfiguration) {
+        return motorIO.applyConfiguration(simulationAndRealConfiguration);
     }
 
     /**
@@ -98,10 +143,12 @@ public class TalonFXMotor {
      * Having two different configurations allows for tuning motor behavior in simulation which might not perfectly mimic real life performance.
      *
      * @param realConfiguration the configuration
+     * @return the status code of applying the configuration. Always OK when the configuration isn't applied
      */
-    public void applyRealConfiguration(TalonFXConfiguration realConfiguration) {
-        if (!RobotHardwareStats.isSimulation())
-            motorIO.applyConfiguration(realConfiguration);
+    public StatusCode applyRealConfiguration(TalonFXConfiguration realConfiguration) {
+        if (RobotHardwareStats.isSimulation())
+            return StatusCode.OK;
+        return motorIO.applyConfiguration(realConfiguration);
     }
 
     /**
@@ -109,16 +156,20 @@ public class TalonFXMotor {
      * Having two different configurations allows for tuning motor behavior in simulation which might not perfectly mimic real life performance.
      *
      * @param simulationConfiguration the configuration
+     * @return the status code of applying the configuration. Always OK when the configuration isn't applied
      */
-    public void applySimulationConfiguration(TalonFXConfiguration simulationConfiguration) {
-        if (RobotHardwareStats.isSimulation())
-            motorIO.applyConfiguration(simulationConfiguration);
+    public StatusCode applySimulationConfiguration(TalonFXConfiguration simulationConfiguration) {
+        if (!RobotHardwareStats.isSimulation())
+            return StatusCode.OK;
+        return motorIO.applyConfiguration(simulationConfiguration);
     }
 
     /**
      * Stops the motor.
      */
     public void stopMotor() {
+        if (controlRequestDeduplicator != null)
+            controlRequestDeduplicator.reset();
         motorIO.stopMotor();
     }
 
@@ -143,14 +194,26 @@ public class TalonFXMotor {
         return motorInputs.getThreadedSignal(signal.name);
     }
 
+    /**
+     * Gets the timestamps of the samples of a threaded signal from the motor.
+     * Only available when {@link frc.trigon.lib.hardware.phoenix6.Phoenix6SignalThread#setRecordingSignalTimestamps(boolean)} is enabled.
+     *
+     * @param signal the type of threaded signal to get the timestamps of
+     * @return the timestamps of the threaded signal's samples in seconds
+     */
+    public double[] getThreadedSignalTimestamps(TalonFXSignal signal) {
+        return motorInputs.getThreadedSignalTimestamps(signal.name);
+    }
+
     /**
      * Registers a signal to the motor.
      *
      * @param signal               the signal to register
      * @param updateFrequencyHertz the frequency at which the signal will be updated
+     * @return the handle of the signal, which can be read without looking the signal up by name
      */
-    public void registerSignal(TalonFXSignal signal, double updateFrequencyHertz) {
-        motorInputs.registerSignal(motorSignalToStatusSignal(signal), updateFrequencyHertz);
+    public SignalHandle registerSignal(TalonFXSignal signal, double updateFrequencyHertz) {
+        return motorInputs.registerSignal(signal.name, motorSignalToStatusSignal(signal), updateFrequencyHertz);
     }
 
     /**
@@ -159,20 +222,104 @@ public class TalonFXMotor {
      *
      * @param signal               the threaded signal to register
      * @param updateFrequencyHertz the frequency at which the threaded signal will be updated
+     * @return the handle of the signal, which can be read without looking the signal up by name
      */
-    public void registerThreadedSignal(TalonFXSignal signal, double updateFrequencyHertz) {
-        motorInputs.registerThreadedSignal(motorSignalToStatusSignal(signal), updateFrequencyHertz);
+    public SignalHandle registerThreadedSignal(TalonFXSignal signal, double updateFrequencyHertz) {
+        return motorInputs.registerThreadedSignal(signal.name, motorSignalToStatusSignal(signal), updateFrequencyHertz);
     }
 
     /**
      * Sends a control request to the motor.
+     * If control request deduplication is enabled, the request is only sent if it differs from the last request, or the keep-alive period passed.
      *
      * @param request the request to send
      */
     public void setControl(ControlRequest request) {
+        if (controlRequestDeduplicator != null && !controlRequestDeduplicator.shouldSend(request))
+            return;
         motorIO.setControl(request);
     }
 
+    /**
+     * Sets the voltage output of the motor.
+     * This and the other primitive control setters reuse a request owned by the motor, so they don't allocate.
+     *
+     * @param voltage the voltage to apply
+     */
+    public void setVoltage(double voltage) {
+        setControl(voltageRequest.withOutput(voltage));
+    }
+
+    /**
+     * Sets the duty cycle output of the motor.
+     *
+     * @param dutyCycle the duty cycle to apply, from -1 to 1
+     */
+    public void setDutyCycle(double dutyCycle) {
+        setControl(dutyCycleRequest.withOutput(dutyCycle));
+    }
+
+    /**
+     * Sets the torque current output of the motor. Requires Phoenix Pro.
+     *
+     * @param currentAmperes the torque current to apply in amperes
+     */
+    public void setTorqueCurrent(double currentAmperes) {
+        setControl(torqueCurrentRequest.withOutput(currentAmperes));
+    }
+
+    /**
+     * Sets the target position of the motor's position closed loop.
+     *
+     * @param positionRotations the target position in rotations
+     * @param slot              the PID slot to use
+     */
+    public void setClosedLoopPosition(double positionRotations, int slot) {
+        setControl(positionRequest.withPosition(positionRotations).withSlot(slot));
+    }
+
+    /**
+     * Sets the target velocity of the motor's velocity closed loop.
+     *
+     * @param velocityRotationsPerSecond the target velocity in rotations per second
+     * @param slot                       the PID slot to use
+     */
+    public void setClosedLoopVelocity(double velocityRotationsPerSecond, int slot) {
+        setControl(velocityRequest.withVelocity(velocityRotationsPerSecond).withSlot(slot));
+    }
+
+    /**
+     * Sets the target position of the motor's Motion Magic profile.
+     *
+     * @param positionRotations the target position in rotations
+     */
+    public void setMotionMagicPosition(double positionRotations) {
+        setControl(motionMagicPositionRequest.withPosition(positionRotations));
+    }
+
+    /**
+     * Sets the target velocity of the motor's Motion Magic velocity profile.
+     *
+     * @param velocityRotationsPerSecond the target velocity in rotations per second
+     */
+    public void setMotionMagicVelocity(double velocityRotationsPerSecond) {
+        setControl(motionMagicVelocityRequest.withVelocity(velocityRotationsPerSecond));
+    }
+
+    /**
+     * Sets whether the motor's primitive control setters use FOC (Field Oriented Control). FOC requires Phoenix Pro.
+     *
+     * @param enableFOC whether to use FOC
+     */
+    public void setFOCEnabled(boolean enableFOC) {
+        voltageRequest.EnableFOC = enableFOC;
+        dutyCycleRequest.EnableFOC = enableFOC;
+        positionRequest.EnableFOC = enableFOC;
+        velocityRequest.EnableFOC = enableFOC;
+        motionMagicPositionRequest.EnableFOC = enableFOC;
+        motionMagicVelocityRequest.EnableFOC = enableFOC;
+    }
+
     /**
      * Sets the motor's current position in rotations.
      *
@@ -191,6 +338,16 @@ public class TalonFXMotor {
         motorIO.setBrake(brake);
     }
 
+    /**
+     * Gets the underlying status signal of the motor. Used by APIs that sample signals directly, like {@link frc.trigon.lib.hardware.phoenix6.Phoenix6OdometryFrames}.
+     *
+     * @param signal the type of signal to get
+     * @return the status signal, or null in replay
+     */
+    public BaseStatusSignal getStatusSignal(TalonFXSignal signal) {
+        return motorSignalToStatusSignal(signal);
+    }
+
     private BaseStatusSignal motorSignalToStatusSignal(TalonFXSignal signal) {
         final TalonFX talonFX = motorIO.getTalonFX();
         if (RobotHardwareStats.isReplay() || talonFX == null)
@@ -0,0 +1,246 @@
+package frc.trigon.lib.hardware.phoenix6.talonfx;
+
+import com.ctre.phoenix6.BaseStatusSignal;
+import com.ctre.phoenix6.controls.ControlRequest;
+import com.ctre.phoenix6.controls.DifferentialFollower;
+import com.ctre.phoenix6.controls.Follower;
+import com.ctre.phoenix6.signals.MotorAlignmentValue;
+import frc.trigon.lib.hardware.CANBusUtilizationPlanner;
+import frc.trigon.lib.hardware.RobotHardwareStats;
+import frc.trigon.lib.hardware.phoenix6.Phoenix6Inputs;
+import org.littletonrobotics.junction.LogTable;
+import org.littletonrobotics.junction.Logger;
+import org.littletonrobotics.junction.inputs.LoggableInputs;
+
+import java.util.Arrays;
+
+/**
+ * A class that represents a group of TalonFX motors that drive the same mechanism, like the motors of an elevator or a shooter.
+ * The group's signals are refreshed together in a single batch, so all the members are sampled at the same instant, and each signal is logged as a single array with a value for every member.
+ * Control requests are sent to all the members in one pass, or only to the leader when the other members are configured as followers.
+ * The first motor of the group is its leader.
+ */
+public class TalonFXMotorGroup implements LoggableInputs {
+    private static final double[] EMPTY_ARRAY = new double[0];
+    private final String groupName;
+    private final TalonFXMotor[] motors;
+    private TalonFXSignal[] registeredSignals = new TalonFXSignal[0];
+    private BaseStatusSignal[] statusSignals = new BaseStatusSignal[0];
+    private double[] statusSignalValues = new double[0];
+    private double[][] signalValues = new double[0][];
+    private boolean isFollowingLeader = false;
+
+    /**
+     * Creates a new TalonFX motor group.
+     *
+     * @param groupName the name of the group, used for logging
+     * @param motors    the motors of the group. The first motor is the leader
+     */
+    public TalonFXMotorGroup(String groupName, TalonFXMotor... motors) {
+        if (motors.length == 0)
+            throw new IllegalArgumentException("Motor group \"" + groupName + "\" must have at least one motor.");
+
+        this.groupName = groupName;
+        this.motors = motors;
+    }
+
+    /**
+     * Refreshes the group's signals in a single batch, updates the members and logs the group's inputs.
+     * The signals are refreshed through {@link Phoenix6Inputs#refreshSignals(BaseStatusSignal[], double[])}, so they don't race the inputs prefetcher.
+     * Should be called periodically, instead of calling {@link TalonFXMotor#update()} on the members.
+     */
+    public void update() {
+        if (statusSignals.length != 0)
+            Phoenix6Inputs.refreshSignals(statusSignals, statusSignalValues);
+        for (TalonFXMotor motor : motors)
+            motor.update();
+        Logger.processInputs("Motors/" + groupName, this);
+    }
+
+    @Override
+    public void toLog(LogTable table) {
+        for (int i = 0; i < registeredSignals.length; i++) {
+            final double[] values = new double[motors.length];
+            for (int j = 0; j < motors.length; j++)
+                values[j] = statusSignalValues[i * motors.length + j];
+
+            signalValues[i] = values;
+            table.put(registeredSignals[i].name, values);
+        }
+    }
+
+    @Override
+    public void fromLog(LogTable table) {
+        for (int i = 0; i < registeredSignals.length; i++)
+            signalValues[i] = table.get(registeredSignals[i].name, EMPTY_ARRAY);
+    }
+
+    /**
+     * Registers a signal for all the group's members. The signal is refreshed and logged with the group rather than with the members.
+     *
+     * @param signal               the signal to register
+     * @param updateFrequencyHertz the frequency at which the signal will be updated
+     */
+    public void registerSignal(TalonFXSignal signal, double updateFrequencyHertz) {
+        if (Arrays.asList(registeredSignals).contains(signal))
+            return;
+
+        registeredSignals = Arrays.copyOf(registeredSignals, registeredSignals.length + 1);
+        registeredSignals[registeredSignals.length - 1] = signal;
+        signalValues = Arrays.copyOf(signalValues, signalValues.length + 1);
+        signalValues[signalValues.length - 1] = new double[motors.length];
+        if (RobotHardwareStats.isReplay())
+            return;
+
+        final BaseStatusSignal[] memberSignals = new BaseStatusSignal[motors.length];
+        for (int i = 0; i < motors.length; i++)
+            memberSignals[i] = motors[i].getStatusSignal(signal);
+        if (RobotHardwareStats.isSimulation())
+            updateFrequencyHertz = 100; // For some reason, simulation sometimes malfunctions if a status signal isn't updated frequently enough.
+        BaseStatusSignal.setUpdateFrequencyForAll(updateFrequencyHertz, memberSignals);
+        for (int i = 0; i < motors.length; i++)
+            CANBusUtilizationPlanner.registerSignal(motors[i].getCanbus(), "Motors/" + groupName + "/" + signal.name + "/" + i, updateFrequencyHertz, false, null);
+
+        statusSignals = Arrays.copyOf(statusSignals, statusSignals.length + motors.length);
+        System.arraycopy(memberSignals, 0, statusSignals, statusSignals.length - motors.length, motors.length);
+        statusSignalValues = new double[statusSignals.length];
+    }
+
+    /**
+     * Gets a signal of all the group's members.
+     *
+     * @param signal the type of signal to get
+     * @return the signal's values, ordered like the group's members. Empty if the signal isn't registered
+     */
+    public double[] getSignal(TalonFXSignal signal) {
+        for (int i = 0; i < registeredSignals.length; i++) {
+            if (registeredSignals[i] == signal)
+                return signalValues[i];
+        }
+        return EMPTY_ARRAY;
+    }
+
+    /**
+     * Gets a signal of one of the group's members.
+     *
+     * @param signal      the type of signal to get
+     * @param memberIndex the index of the member in the group
+     * @return the member's signal, or 0 if the signal isn't registered
+     */
+    public double getSignal(TalonFXSignal signal, int memberIndex) {
+        final double[] values = getSignal(signal);
+        return memberIndex < values.length ? values[memberIndex] : 0;
+    }
+
+    /**
+     * Makes all the members follow the leader, so control requests are only sent to the leader.
+     *
+     * @param followerAlignments the alignment of every follower relative to the leader, ordered like the members after the leader
+     * @throws IllegalArgumentException if there isn't an alignment for every follower
+     */
+    public void setFollowers(MotorAlignmentValue... followerAlignments) {
+        validateFollowerAlignments(followerAlignments);
+        for (int i = 1; i < motors.length; i++)
+            motors[i].setControl(new Follower(getLeader().getID(), followerAlignments[i - 1]));
+        isFollowingLeader = true;
+    }
+
+    /**
+     * Makes all the members follow the leader's differential mechanism, so differential control requests are only sent to the leader.
+     * The leader's configuration must set its differential sensors to use the follower.
+     *
+     * @param followerAlignments the alignment of every follower relative to the leader, ordered like the members after the leader
+     * @throws IllegalArgumentException if there isn't an alignment for every follower
+     */
+    public void setDifferentialFollowers(MotorAlignmentValue... followerAlignments) {
+        validateFollowerAlignments(followerAlignments);
+        for (int i = 1; i < motors.length; i++)
+            motors[i].setControl(new DifferentialFollower(getLeader().getID(), followerAlignments[i - 1]));
+        isFollowingLeader = true;
+    }
+
+    /**
+     * Sends a control request to the group. If the members follow the leader the request is only sent to the leader, and otherwise it's sent to every member.
+     *
+     * @param request the request to send
+     */
+    public void setControl(ControlRequest request) {
+        if (isFollowingLeader) {
+            getLeader().setControl(request);
+            return;
+        }
+
+        for (TalonFXMotor motor : motors)
+            motor.setControl(request);
+    }
+
+    /**
+     * Sets the voltage output of the group without allocating a request.
+     *
+     * @param voltage the voltage to apply
+     */
+    public void setVoltage(double voltage) {
+        if (isFollowingLeader) {
+            getLeader().setVoltage(voltage);
+            return;
+        }
+
+        for (TalonFXMotor motor : motors)
+            motor.setVoltage(voltage);
+    }
+
+    /**
+     * Sets the target position of the group's Motion Magic profile without allocating a request.
+     *
+     * @param positionRotations the target position in rotations
+     */
+    public void setMotionMagicPosition(double positionRotations) {
+        if (isFollowingLeader) {
+            getLeader().setMotionMagicPosition(positionRotations);
+            return;
+        }
+
+        for (TalonFXMotor motor : motors)
+            motor.setMotionMagicPosition(positionRotations);
+    }
+
+    /**
+     * Stops the group. If the members follow the leader only the leader is stopped, so the followers keep following it.
+     */
+    public void stopMotors() {
+        if (isFollowingLeader) {
+            getLeader().stopMotor();
+            return;
+        }
+
+        for (TalonFXMotor motor : motors)
+            motor.stopMotor();
+    }
+
+    /**
+     * Sets the neutral mode of all the group's members.
+     *
+     * @param brake true if the motors should brake, false if they should coast
+     */
+    public void setBrake(boolean brake) {
+        for (TalonFXMotor motor : motors)
+            motor.setBrake(brake);
+    }
+
+    public TalonFXMotor getLeader() {
+        return motors[0];
+    }
+
+    public TalonFXMotor getMotor(int memberIndex) {
+        return motors[memberIndex];
+    }
+
+    public int getMotorCount() {
+        return motors.length;
+    }
+
+    private void validateFollowerAlignments(MotorAlignmentValue[] followerAlignments) {
+        if (followerAlignments.length != motors.length - 1)
+            throw new IllegalArgumentException("Motor group \"" + groupName + "\" has " + (motors.length - 1) + " followers, but " + followerAlignments.length + " follower alignments were given.");
+    }
+}
@@ -1,17 +1,23 @@
 package frc.trigon.lib.hardware.phoenix6.talonfx.io;
 
 import com.ctre.phoenix6.CANBus;
+import com.ctre.phoenix6.StatusCode;
 import com.ctre.phoenix6.configs.TalonFXConfiguration;
 import com.ctre.phoenix6.controls.ControlRequest;
 import com.ctre.phoenix6.hardware.TalonFX;
 import com.ctre.phoenix6.signals.NeutralModeValue;
+import frc.trigon.lib.hardware.phoenix6.Phoenix6ConfigurationFingerprints;
 import frc.trigon.lib.hardware.phoenix6.talonfx.TalonFXIO;
 
 public class RealTalonFXIO extends TalonFXIO {
     private final TalonFX talonFX;
+    private final String canbus;
+    private final int id;
 
     public RealTalonFXIO(int id, String canbus) {
         this.talonFX = new TalonFX(id, new CANBus(canbus));
+        this.canbus = canbus;
+        this.id = id;
     }
 
     @Override
@@ -25,8 +31,8 @@ public class RealTalonFXIO extends TalonFXIO {
     }
 
     @Override
-    public void applyConfiguration(TalonFXConfiguration configuration) {
-        talonFX.getConfigurator().apply(configuration);
+    public StatusCode applyConfiguration(TalonFXConfiguration configuration) {
+        return Phoenix6ConfigurationFingerprints.applyConfiguration("TalonFX", canbus, id, configuration, TalonFXConfiguration::new, copy -> copy.CustomParams, talonFX.getConfigurator()::apply, talonFX.getConfigurator()::refresh);
     }
 
     @Override
@@ -46,5 +52,6 @@ public class RealTalonFXIO extends TalonFXIO {
 
     public void setBrake(boolean brake) {
         talonFX.setNeutralMode(brake ? NeutralModeValue.Brake : NeutralModeValue.Coast);
+        Phoenix6ConfigurationFingerprints.invalidateFingerprint("TalonFX", canbus, id);
     }
 }
@@ -1,5 +1,6 @@
 package frc.trigon.lib.hardware.phoenix6.talonfx.io;
 
+import com.ctre.phoenix6.StatusCode;
 import com.ctre.phoenix6.configs.TalonFXConfiguration;
 import com.ctre.phoenix6.controls.ControlRequest;
 import com.ctre.phoenix6.hardware.TalonFX;
@@ -8,7 +9,9 @@ import com.ctre.phoenix6.signals.InvertedValue;
 import com.ctre.phoenix6.sim.TalonFXSimState;
 import frc.trigon.lib.hardware.RobotHardwareStats;
 import frc.trigon.lib.hardware.phoenix6.talonfx.TalonFXIO;
+import frc.trigon.lib.hardware.simulation.BatterySimulation;
 import frc.trigon.lib.hardware.simulation.MotorPhysicsSimulation;
+import frc.trigon.lib.hardware.simulation.SimulationEngine;
 
 public class SimulationTalonFXIO extends TalonFXIO {
     private final TalonFX talonFX;
@@ -26,9 +29,8 @@ public class SimulationTalonFXIO extends TalonFXIO {
         if (physicsSimulation == null)
             return;
 
-        physicsSimulation.setInputVoltage(motorSimState.getMotorVoltage());
-        physicsSimulation.updateMotor();
-
+        SimulationEngine.update();
+        motorSimState.setSupplyVoltage(BatterySimulation.getBusVoltage());
         motorSimState.setRawRotorPosition(physicsSimulation.getRotorPositionRotations());
         motorSimState.setRotorVelocity(physicsSimulation.getRotorVelocityRotationsPerSecond());
     }
@@ -44,9 +46,9 @@ public class SimulationTalonFXIO extends TalonFXIO {
     }
 
     @Override
-    public void applyConfiguration(TalonFXConfiguration configuration) {
+    public StatusCode applyConfiguration(TalonFXConfiguration configuration) {
         final TalonFXConfiguration adaptedConfiguration = adaptConfigurationToSimulation(configuration);
-        talonFX.getConfigurator().apply(adaptedConfiguration);
+        return talonFX.getConfigurator().apply(adaptedConfiguration);
     }
 
     @Override
@@ -62,6 +64,7 @@ public class SimulationTalonFXIO extends TalonFXIO {
     @Override
     public void setPhysicsSimulation(MotorPhysicsSimulation physicsSimulation) {
         this.physicsSimulation = physicsSimulation;
+        physicsSimulation.setInputVoltageSupplier(motorSimState::getMotorVoltage);
     }
 
     @Override
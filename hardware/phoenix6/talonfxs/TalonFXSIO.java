@@ -1,5 +1,6 @@
 package frc.trigon.lib.hardware.phoenix6.talonfxs;
 
+import com.ctre.phoenix6.StatusCode;
 import com.ctre.phoenix6.configs.TalonFXSConfiguration;
 import com.ctre.phoenix6.controls.ControlRequest;
 import com.ctre.phoenix6.hardware.TalonFXS;
@@ -15,7 +16,8 @@ public class TalonFXSIO {
     protected void setPosition(double positionRotations) {
     }
 
-    protected void applyConfiguration(TalonFXSConfiguration configuration) {
+    protected StatusCode applyConfiguration(TalonFXSConfiguration configuration) {
+        return StatusCode.OK;
     }
 
     protected void optimizeBusUsage() {
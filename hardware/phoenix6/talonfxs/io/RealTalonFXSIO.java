@@ -1,17 +1,23 @@
 package frc.trigon.lib.hardware.phoenix6.talonfxs.io;
 
 import com.ctre.phoenix6.CANBus;
+import com.ctre.phoenix6.StatusCode;
 import com.ctre.phoenix6.configs.TalonFXSConfiguration;
 import com.ctre.phoenix6.controls.ControlRequest;
 import com.ctre.phoenix6.hardware.TalonFXS;
 import com.ctre.phoenix6.signals.NeutralModeValue;
+import frc.trigon.lib.hardware.phoenix6.Phoenix6ConfigurationFingerprints;
 import frc.trigon.lib.hardware.phoenix6.talonfxs.TalonFXSIO;
 
 public class RealTalonFXSIO extends TalonFXSIO {
     private final TalonFXS talonFXS;
+    private final String canbus;
+    private final int id;
 
     public RealTalonFXSIO(int id, String canbus) {
         this.talonFXS = new TalonFXS(id, new CANBus(canbus));
+        this.canbus = canbus;
+        this.id = id;
     }
 
     @Override
@@ -25,8 +31,8 @@ public class RealTalonFXSIO extends TalonFXSIO {
     }
 
     @Override
-    public void applyConfiguration(TalonFXSConfiguration configuration) {
-        talonFXS.getConfigurator().apply(configuration);
+    public StatusCode applyConfiguration(TalonFXSConfiguration configuration) {
+        return Phoenix6ConfigurationFingerprints.applyConfiguration("TalonFXS", canbus, id, configuration, TalonFXSConfiguration::new, copy -> copy.CustomParams, talonFXS.getConfigurator()::apply, talonFXS.getConfigurator()::refresh);
     }
 
     @Override
@@ -46,5 +52,6 @@ public class RealTalonFXSIO extends TalonFXSIO {
 
     public void setBrake(boolean brake) {
         talonFXS.setNeutralMode(brake ? NeutralModeValue.Brake : NeutralModeValue.Coast);
+        Phoenix6ConfigurationFingerprints.invalidateFingerprint("TalonFXS", canbus, id);
     }
 }
@@ -1,5 +1,6 @@
 package frc.trigon.lib.hardware.phoenix6.talonfxs.io;
 
+import com.ctre.phoenix6.StatusCode;
 import com.ctre.phoenix6.configs.TalonFXSConfiguration;
 import com.ctre.phoenix6.controls.ControlRequest;
 import com.ctre.phoenix6.hardware.TalonFXS;
@@ -8,7 +9,9 @@ import com.ctre.phoenix6.signals.InvertedValue;
 import com.ctre.phoenix6.sim.TalonFXSSimState;
 import frc.trigon.lib.hardware.RobotHardwareStats;
 import frc.trigon.lib.hardware.phoenix6.talonfxs.TalonFXSIO;
+import frc.trigon.lib.hardware.simulation.BatterySimulation;
 import frc.trigon.lib.hardware.simulation.MotorPhysicsSimulation;
+import frc.trigon.lib.hardware.simulation.SimulationEngine;
 
 public class SimulationTalonFXSIO extends TalonFXSIO {
     private final TalonFXS talonFXS;
@@ -26,9 +29,8 @@ public class SimulationTalonFXSIO extends TalonFXSIO {
         if (physicsSimulation == null)
             return;
 
-        physicsSimulation.setInputVoltage(motorSimState.getMotorVoltage());
-        physicsSimulation.updateMotor();
-
+        SimulationEngine.update();
+        motorSimState.setSupplyVoltage(BatterySimulation.getBusVoltage());
         motorSimState.setRawRotorPosition(physicsSimulation.getRotorPositionRotations());
         motorSimState.setRotorVelocity(physicsSimulation.getRotorVelocityRotationsPerSecond());
     }
@@ -44,9 +46,9 @@ public class SimulationTalonFXSIO extends TalonFXSIO {
     }
 
     @Override
-    public void applyConfiguration(TalonFXSConfiguration configuration) {
+    public StatusCode applyConfiguration(TalonFXSConfiguration configuration) {
         final TalonFXSConfiguration adaptedConfiguration = adaptConfigurationToSimulation(configuration);
-        talonFXS.getConfigurator().apply(adaptedConfiguration);
+        return talonFXS.getConfigurator().apply(adaptedConfiguration);
     }
 
     @Override
@@ -62,6 +64,7 @@ public class SimulationTalonFXSIO extends TalonFXSIO {
     @Override
     public void setPhysicsSimulation(MotorPhysicsSimulation physicsSimulation) {
         this.physicsSimulation = physicsSimulation;
+        physicsSimulation.setInputVoltageSupplier(motorSimState::getMotorVoltage);
     }
 
     @Override
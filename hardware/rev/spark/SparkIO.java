@@ -1,6 +1,7 @@
 package frc.trigon.lib.hardware.rev.spark;
 
 import com.revrobotics.PersistMode;
+import com.revrobotics.REVLibError;
 import com.revrobotics.ResetMode;
 import com.revrobotics.spark.ClosedLoopSlot;
 import com.revrobotics.spark.SparkBase;
@@ -28,7 +29,8 @@ public class SparkIO {
     public void stopMotor() {
     }
 
-    public void configure(SparkBaseConfig configuration, ResetMode resetMode, PersistMode persistMode) {
+    public REVLibError configure(SparkBaseConfig configuration, ResetMode resetMode, PersistMode persistMode) {
+        return REVLibError.kOk;
     }
 
     public void setInverted(boolean inverted) {
@@ -1,18 +1,24 @@
 package frc.trigon.lib.hardware.rev.spark;
 
 import org.littletonrobotics.junction.LogTable;
+import frc.trigon.lib.hardware.DoubleFrameRingBuffer;
 import frc.trigon.lib.hardware.InputsBase;
 import frc.trigon.lib.hardware.RobotHardwareStats;
-import frc.trigon.lib.hardware.SignalThreadBase;
+import frc.trigon.lib.hardware.SignalHandle;
+
+import java.util.Arrays;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Queue;
 
 public class SparkInputs extends InputsBase {
-    private final HashMap<String, Queue<Double>> signalToThreadedQueue = new HashMap<>();
     private final SparkSignalThread signalThread = SparkSignalThread.getInstance();
     private SparkStatusSignal[] signals = new SparkStatusSignal[0];
+    private SignalHandle[]
+            signalHandles = new SignalHandle[0],
+            threadedSignalHandles = new SignalHandle[0];
+    private DoubleFrameRingBuffer[] threadedQueues = new DoubleFrameRingBuffer[0];
+    private final double[]
+            drainedValues = new double[SparkSignalThread.SIGNAL_QUEUE_CAPACITY],
+            drainedTimestamps = new double[SparkSignalThread.SIGNAL_QUEUE_CAPACITY];
 
     /**
      * Creates a new SparkInputs instance.
@@ -28,8 +34,8 @@ public class SparkInputs extends InputsBase {
         if (signals.length == 0)
             return;
 
-        updateSignalsToTable(table);
         updateThreadedSignalsToTable(table);
+        updateSignalsToTable(table);
 
         latestTable = table;
     }
@@ -37,43 +43,52 @@ public class SparkInputs extends InputsBase {
     /**
      * Registers a signal.
      *
+     * @param signalName   the name of the signal, used to read it from the log in replay
      * @param statusSignal the signal to register
+     * @return the handle of the signal
      */
-    public void registerSignal(SparkStatusSignal statusSignal) {
+    public SignalHandle registerSignal(String signalName, SparkStatusSignal statusSignal) {
+        final SignalHandle signalHandle = registerSignalHandle(signalName, false);
         if (statusSignal == null || RobotHardwareStats.isReplay())
-            return;
+            return signalHandle;
 
-        addSignalToSignalsArray(statusSignal);
+        signals = append(signals, statusSignal);
+        signalHandles = append(signalHandles, signalHandle);
+        return signalHandle;
     }
 
     /**
      * Registers a threaded signal.
      * Threaded signals use threading to process certain signals separately at a faster rate.
+     * Registering the first threaded signal starts the Spark signal thread, and every sample is recorded along with the FPGA timestamp it was read at.
      *
+     * @param signalName   the name of the signal, used to read it from the log in replay
      * @param statusSignal the threaded signal to register
+     * @return the handle of the signal
      */
-    public void registerThreadedSignal(SparkStatusSignal statusSignal) {
+    public SignalHandle registerThreadedSignal(String signalName, SparkStatusSignal statusSignal) {
+        final SignalHandle signalHandle = registerSignal(signalName, statusSignal);
+        registerSignalHandle(signalName, true);
         if (statusSignal == null || RobotHardwareStats.isReplay())
-            return;
+            return signalHandle;
 
-        registerSignal(statusSignal);
-        signalToThreadedQueue.put(statusSignal.getName() + "_Threaded", signalThread.registerThreadedSignal(statusSignal.getValueSupplier()));
+        threadedSignalHandles = append(threadedSignalHandles, signalHandle);
+        final DoubleFrameRingBuffer queue = new DoubleFrameRingBuffer(SparkSignalThread.SIGNAL_QUEUE_CAPACITY, 1);
+        threadedQueues = append(threadedQueues, queue);
+        signalThread.registerThreadedSignal(getName() + "/" + signalName, statusSignal, queue);
+        return signalHandle;
     }
 
     private void updateThreadedSignalsToTable(LogTable table) {
-        for (Map.Entry<String, Queue<Double>> entry : signalToThreadedQueue.entrySet())
-            table.put(entry.getKey(), SignalThreadBase.queueToDoubleArray(entry.getValue()));
+        for (int i = 0; i < threadedQueues.length; i++) {
+            final int sampleCount = threadedQueues[i].drain(drainedValues, SparkSignalThread.SIGNAL_QUEUE_CAPACITY, drainedTimestamps);
+            putThreadedSignalTimestamps(table, threadedSignalHandles[i], Arrays.copyOf(drainedTimestamps, sampleCount));
+            putThreadedSignal(table, threadedSignalHandles[i], Arrays.copyOf(drainedValues, sampleCount));
+        }
     }
 
     private void updateSignalsToTable(LogTable table) {
-        for (SparkStatusSignal signal : signals)
-            table.put(signal.getName(), signal.getValue());
-    }
-
-    private void addSignalToSignalsArray(SparkStatusSignal statusSignal) {
-        final SparkStatusSignal[] newSignals = new SparkStatusSignal[signals.length + 1];
-        System.arraycopy(signals, 0, newSignals, 0, signals.length);
-        newSignals[signals.length] = statusSignal;
-        signals = newSignals;
+        for (int i = 0; i < signals.length; i++)
+            putSignal(table, signalHandles[i], signals[i].getValue());
     }
 }
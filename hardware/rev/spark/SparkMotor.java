@@ -1,14 +1,19 @@
 package frc.trigon.lib.hardware.rev.spark;
 
 import com.revrobotics.PersistMode;
+import com.revrobotics.REVLibError;
 import com.revrobotics.ResetMode;
 import com.revrobotics.spark.ClosedLoopSlot;
 import com.revrobotics.spark.SparkBase;
 import com.revrobotics.spark.SparkClosedLoopController;
 import com.revrobotics.spark.config.SparkBaseConfig;
+import com.revrobotics.spark.config.SparkMaxConfig;
+import frc.trigon.lib.hardware.CANBusUtilizationPlanner;
 import frc.trigon.lib.hardware.RobotHardwareStats;
+import frc.trigon.lib.hardware.SignalHandle;
 import frc.trigon.lib.hardware.rev.spark.io.RealSparkIO;
 import frc.trigon.lib.hardware.rev.spark.io.SimulationSparkIO;
+import frc.trigon.lib.hardware.rev.sparkencoder.AbsoluteSparkEncoder;
 import frc.trigon.lib.hardware.simulation.MotorPhysicsSimulation;
 import org.littletonrobotics.junction.Logger;
 
@@ -16,6 +21,19 @@ import org.littletonrobotics.junction.Logger;
  * A class the represents a Spark motor. Used to control and read data from a Spark motor.
  */
 public class SparkMotor {
+    /**
+     * The status frame period of signals that aren't registered, after {@link #optimizeBusUsage()} is called.
+     */
+    public static final int UNUSED_SIGNAL_PERIOD_MILLISECONDS = 1000;
+    /**
+     * The slowest status frame period of {@link SparkSignal#APPLIED_OUTPUT}, which is REV's default.
+     * Spark followers copy the applied output frame of their leader, so slowing it down would slow down the followers.
+     */
+    public static final int APPLIED_OUTPUT_PERIOD_MILLISECONDS = 10;
+    private static final String SPARK_CANBUS = "";
+    private final double[] signalToRequestedFrequencyHertz = new double[SparkSignal.values().length];
+    private final boolean[] signalToIsThreaded = new boolean[SparkSignal.values().length];
+    private boolean isListeningToPlanner = false, isListeningToThreadFrequency = false, hasPlannedStatusFramePeriods = false, hasOptimizedBusUsage = false;
     private final String motorName;
     private final SparkIO motorIO;
     private final SparkInputs motorInputs;
@@ -50,22 +68,44 @@ public class SparkMotor {
     /**
      * Registers a threaded signal to be logged from the motor.
      * Threaded signals use threading to process certain signals separately at a faster rate.
+     * The Spark signal thread only runs once a motor registers a threaded signal, so this is how a motor opts in to high-frequency sampling.
+     * The thread's frequency can be set using {@link SparkSignalThread#setThreadFrequencyHertz(double)}, and the signal's status frame follows it, even if it's changed after the bus usage was optimized.
      *
      * @param signal the signal to be registered
+     * @return the handle of the signal, which can be read without looking the signal up by name
      */
-    public void registerThreadedSignal(SparkSignal signal) {
+    public SignalHandle registerThreadedSignal(SparkSignal signal) {
+        signalToIsThreaded[signal.ordinal()] = true;
+        if (!isListeningToThreadFrequency) {
+            SparkSignalThread.getInstance().addThreadFrequencyListener(this::onThreadFrequencyChanged);
+            isListeningToThreadFrequency = true;
+        }
         final SparkStatusSignal statusSignal = signal.getStatusSignal(motorIO.getMotor(), motorIO.getEncoder());
-        motorInputs.registerThreadedSignal(statusSignal);
+        return motorInputs.registerThreadedSignal(signal.name, statusSignal);
     }
 
     /**
-     * Registers a signal to be read from the motor.
+     * Registers a signal to be read from the motor once every robot loop.
      *
      * @param signal the signal to be read
+     * @return the handle of the signal, which can be read without looking the signal up by name
+     */
+    public SignalHandle registerSignal(SparkSignal signal) {
+        return registerSignal(signal, 1 / RobotHardwareStats.getPeriodicTimeSeconds());
+    }
+
+    /**
+     * Registers a signal to be read from the motor.
+     * The update frequency is only used to set the signal's status frame period when {@link #optimizeBusUsage()} is called.
+     *
+     * @param signal               the signal to be read
+     * @param updateFrequencyHertz the frequency at which the signal should be sent by the motor
+     * @return the handle of the signal, which can be read without looking the signal up by name
      */
-    public void registerSignal(SparkSignal signal) {
+    public SignalHandle registerSignal(SparkSignal signal, double updateFrequencyHertz) {
+        requestFrequency(signal, updateFrequencyHertz);
         final SparkStatusSignal statusSignal = signal.getStatusSignal(motorIO.getMotor(), motorIO.getEncoder());
-        motorInputs.registerSignal(statusSignal);
+        return motorInputs.registerSignal(signal.name, statusSignal);
     }
 
     /**
@@ -89,6 +129,17 @@ public class SparkMotor {
         return motorInputs.getThreadedSignal(signal.name);
     }
 
+    /**
+     * Gets the timestamps of the samples of a threaded signal from the motor.
+     * Each timestamp is the FPGA time at which the matching sample in {@link #getThreadedSignal(SparkSignal)} was read.
+     *
+     * @param signal the threaded signal to get the timestamps of
+     * @return the timestamps of the threaded signal's samples in seconds
+     */
+    public double[] getThreadedSignalTimestamps(SparkSignal signal) {
+        return motorInputs.getThreadedSignalTimestamps(signal.name);
+    }
+
     /**
      * Sends a request to the motor.
      *
@@ -145,6 +196,25 @@ public class SparkMotor {
         motorIO.setPeriodicFrameTimeout(timeoutMs);
     }
 
+    /**
+     * Optimizes the motor's CAN bus usage by setting the period of every status frame according to the signals registered to the motor.
+     * Registered signals are sent at the fastest frequency they were registered with, and unregistered signals are sent every {@link #UNUSED_SIGNAL_PERIOD_MILLISECONDS}.
+     * The applied output is an exception, and is always sent at least every {@link #APPLIED_OUTPUT_PERIOD_MILLISECONDS}, since followers of this motor are driven by it.
+     * Should be called after all the motor's signals are registered and its configuration is applied, since resetting the safe parameters resets the periods.
+     * Signals read directly from the Spark, rather than through a registered signal, will only update at the slow period.
+     * The periods are also registered to the {@link CANBusUtilizationPlanner}, which may scale down the non-threaded signals later on.
+     */
+    public void optimizeBusUsage() {
+        for (SparkSignal signal : SparkSignal.values())
+            registerToPlanner(signal);
+        if (!isListeningToPlanner) {
+            CANBusUtilizationPlanner.addPlanListener(this::applyPlannedStatusFramePeriods);
+            isListeningToPlanner = true;
+        }
+        hasOptimizedBusUsage = true;
+        applyStatusFramePeriods();
+    }
+
     /**
      * Stops the motor.
      */
@@ -178,12 +248,12 @@ public class SparkMotor {
      * @param simulationConfiguration configuration to be used in simulation
      * @param resetMode               whether to reset safe parameters before setting the configuration or not
      * @param persistMode             whether to persist the parameters after setting the configuration or not
+     * @return the error of applying the configuration
      */
-    public void applyConfigurations(SparkBaseConfig realConfiguration, SparkBaseConfig simulationConfiguration, ResetMode resetMode, PersistMode persistMode) {
+    public REVLibError applyConfigurations(SparkBaseConfig realConfiguration, SparkBaseConfig simulationConfiguration, ResetMode resetMode, PersistMode persistMode) {
         if (RobotHardwareStats.isSimulation())
-            motorIO.configure(simulationConfiguration, resetMode, persistMode);
-        else
-            motorIO.configure(realConfiguration, resetMode, persistMode);
+            return motorIO.configure(simulationConfiguration, resetMode, persistMode);
+        return motorIO.configure(realConfiguration, resetMode, persistMode);
     }
 
     /**
@@ -192,9 +262,10 @@ public class SparkMotor {
      * @param configuration the configuration to apply
      * @param resetMode     whether to reset safe parameters before setting the configuration or not
      * @param persistMode   whether to persist the parameters after setting the configuration or not
+     * @return the error of applying the configuration
      */
-    public void applyConfiguration(SparkBaseConfig configuration, ResetMode resetMode, PersistMode persistMode) {
-        motorIO.configure(configuration, resetMode, persistMode);
+    public REVLibError applyConfiguration(SparkBaseConfig configuration, ResetMode resetMode, PersistMode persistMode) {
+        return motorIO.configure(configuration, resetMode, persistMode);
     }
 
     /**
@@ -204,10 +275,12 @@ public class SparkMotor {
      * @param realConfiguration the configuration to apply
      * @param resetMode         whether to reset safe parameters before setting the configuration or not
      * @param persistMode       whether to persist the parameters after setting the configuration or not
+     * @return the error of applying the configuration. Always kOk when the configuration isn't applied
      */
-    public void applyRealConfiguration(SparkBaseConfig realConfiguration, ResetMode resetMode, PersistMode persistMode) {
-        if (!RobotHardwareStats.isSimulation())
-            motorIO.configure(realConfiguration, resetMode, persistMode);
+    public REVLibError applyRealConfiguration(SparkBaseConfig realConfiguration, ResetMode resetMode, PersistMode persistMode) {
+        if (RobotHardwareStats.isSimulation())
+            return REVLibError.kOk;
+        return motorIO.configure(realConfiguration, resetMode, persistMode);
     }
 
     /**
@@ -217,10 +290,12 @@ public class SparkMotor {
      * @param simulationConfiguration the configuration to apply
      * @param resetMode               whether to reset safe parameters before setting the configuration or not
      * @param persistMode             whether to persist the parameters after setting the configuration or not
+     * @return the error of applying the configuration. Always kOk when the configuration isn't applied
      */
-    public void applySimulationConfiguration(SparkBaseConfig simulationConfiguration, ResetMode resetMode, PersistMode persistMode) {
-        if (RobotHardwareStats.isSimulation())
-            motorIO.configure(simulationConfiguration, resetMode, persistMode);
+    public REVLibError applySimulationConfiguration(SparkBaseConfig simulationConfiguration, ResetMode resetMode, PersistMode persistMode) {
+        if (!RobotHardwareStats.isSimulation())
+            return REVLibError.kOk;
+        return motorIO.configure(simulationConfiguration, resetMode, persistMode);
     }
 
     /**
@@ -233,6 +308,82 @@ public class SparkMotor {
         motorIO.setPhysicsSimulation(physicsSimulation, isUsingAbsoluteEncoder);
     }
 
+    private void registerToPlanner(SparkSignal signal) {
+        final int signalIndex = signal.ordinal();
+        final boolean isRegistered = getRequestedFrequencyHertz(signal) > 0;
+        CANBusUtilizationPlanner.registerSignal(
+                SPARK_CANBUS,
+                "Spark" + id + "/" + signal.name,
+                "Spark" + id + "/" + signal.getStatusFrameName(),
+                1000.0 / calculateStatusFramePeriodMilliseconds(signal),
+                isRegistered && !signalToIsThreaded[signalIndex] && signal != SparkSignal.APPLIED_OUTPUT,
+                frequencyHertz -> {
+                    signalToRequestedFrequencyHertz[signalIndex] = frequencyHertz;
+                    hasPlannedStatusFramePeriods = true;
+                }
+        );
+    }
+
+    /**
+     * Re-registers the threaded signals with the new thread frequency, and applies their new status frame periods if the bus usage was already optimized.
+     */
+    private void onThreadFrequencyChanged() {
+        if (!hasOptimizedBusUsage)
+            return;
+
+        for (SparkSignal signal : SparkSignal.values()) {
+            if (signalToIsThreaded[signal.ordinal()])
+                registerToPlanner(signal);
+        }
+        applyStatusFramePeriods();
+    }
+
+    /**
+     * Applies the frequencies the planner scaled down, once after planning, since every application is a blocking configuration round-trip.
+     */
+    private void applyPlannedStatusFramePeriods() {
+        if (!hasPlannedStatusFramePeriods)
+            return;
+
+        hasPlannedStatusFramePeriods = false;
+        applyStatusFramePeriods();
+    }
+
+    private void applyStatusFramePeriods() {
+        final SparkMaxConfig configuration = new SparkMaxConfig();
+        final boolean isUsingAbsoluteEncoder = motorIO.getEncoder() instanceof AbsoluteSparkEncoder;
+        for (SparkSignal signal : SparkSignal.values())
+            signal.setStatusFramePeriod(configuration.signals, calculateStatusFramePeriodMilliseconds(signal), isUsingAbsoluteEncoder);
+
+        motorIO.configure(configuration, ResetMode.kNoResetSafeParameters, PersistMode.kNoPersistParameters);
+    }
+
+    private void requestFrequency(SparkSignal signal, double updateFrequencyHertz) {
+        final int signalIndex = signal.ordinal();
+        signalToRequestedFrequencyHertz[signalIndex] = Math.max(signalToRequestedFrequencyHertz[signalIndex], updateFrequencyHertz);
+    }
+
+    /**
+     * Gets the fastest frequency the signal was requested at. Threaded signals are requested at the signal thread's current frequency, so they follow its changes.
+     *
+     * @param signal the signal
+     * @return the requested frequency, or 0 if the signal isn't registered
+     */
+    private double getRequestedFrequencyHertz(SparkSignal signal) {
+        final int signalIndex = signal.ordinal();
+        if (signalToIsThreaded[signalIndex])
+            return Math.max(signalToRequestedFrequencyHertz[signalIndex], SparkSignalThread.getInstance().getThreadFrequencyHertz());
+        return signalToRequestedFrequencyHertz[signalIndex];
+    }
+
+    private int calculateStatusFramePeriodMilliseconds(SparkSignal signal) {
+        final double requestedFrequencyHertz = getRequestedFrequencyHertz(signal);
+        final int periodMilliseconds = requestedFrequencyHertz <= 0 ? UNUSED_SIGNAL_PERIOD_MILLISECONDS : (int) Math.max(1, Math.floor(1000 / requestedFrequencyHertz));
+        if (signal == SparkSignal.APPLIED_OUTPUT)
+            return Math.min(periodMilliseconds, APPLIED_OUTPUT_PERIOD_MILLISECONDS);
+        return periodMilliseconds;
+    }
+
     private SparkIO createSparkIO(int id, SparkType sparkType) {
         if (RobotHardwareStats.isReplay())
             return new SparkIO();
@@ -1,11 +1,12 @@
 package frc.trigon.lib.hardware.rev.spark;
 
 import com.revrobotics.spark.SparkBase;
+import com.revrobotics.spark.config.SignalsConfig;
 import frc.trigon.lib.hardware.RobotHardwareStats;
 import frc.trigon.lib.hardware.rev.sparkencoder.SparkEncoder;
 import frc.trigon.lib.utilities.Conversions;
 
-import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
 
 /**
  * An enum that represents the different signals that can be sent from a Spark motor.
@@ -18,10 +19,10 @@ public enum SparkSignal {
     BUS_VOLTAGE(SparkBase::getBusVoltage, null);
 
     final String name;
-    final Function<SparkBase, Double> motorSignalFunction;
-    final Function<SparkEncoder, Double> encoderSignalFunction;
+    final ToDoubleFunction<SparkBase> motorSignalFunction;
+    final ToDoubleFunction<SparkEncoder> encoderSignalFunction;
 
-    SparkSignal(Function<SparkBase, Double> motorSignalFunction, Function<SparkEncoder, Double> encoderSignalFunction) {
+    SparkSignal(ToDoubleFunction<SparkBase> motorSignalFunction, ToDoubleFunction<SparkEncoder> encoderSignalFunction) {
         this.name = Conversions.snakeCaseToCamelCase(name());
         this.motorSignalFunction = motorSignalFunction;
         this.encoderSignalFunction = encoderSignalFunction;
@@ -31,8 +32,47 @@ public enum SparkSignal {
         if (RobotHardwareStats.isReplay() || spark == null || encoder == null)
             return null;
         if (motorSignalFunction != null)
-            return new SparkStatusSignal(this, () -> motorSignalFunction.apply(spark));
+            return new SparkStatusSignal(this, spark, () -> motorSignalFunction.applyAsDouble(spark));
         else
-            return new SparkStatusSignal(this, () -> encoderSignalFunction.apply(encoder));
+            return new SparkStatusSignal(this, spark, () -> encoderSignalFunction.applyAsDouble(encoder));
     }
-}
\ No newline at end of file
+
+    /**
+     * Gets the name of the status frame that carries this signal. The position and velocity share the encoder's frame, and the other signals share status frame 0.
+     *
+     * @return the name of the status frame
+     */
+    String getStatusFrameName() {
+        return switch (this) {
+            case POSITION, VELOCITY -> "EncoderStatus";
+            case OUTPUT_CURRENT, APPLIED_OUTPUT, BUS_VOLTAGE -> "Status0";
+        };
+    }
+
+    /**
+     * Sets the period of the status frame that carries this signal.
+     *
+     * @param signalsConfig          the signals configuration to set the period in
+     * @param periodMilliseconds     the period of the status frame in milliseconds
+     * @param isUsingAbsoluteEncoder whether the position and velocity are read from an absolute encoder or from the primary encoder
+     */
+    void setStatusFramePeriod(SignalsConfig signalsConfig, int periodMilliseconds, boolean isUsingAbsoluteEncoder) {
+        switch (this) {
+            case POSITION -> {
+                if (isUsingAbsoluteEncoder)
+                    signalsConfig.absoluteEncoderPositionPeriodMs(periodMilliseconds);
+                else
+                    signalsConfig.primaryEncoderPositionPeriodMs(periodMilliseconds);
+            }
+            case VELOCITY -> {
+                if (isUsingAbsoluteEncoder)
+                    signalsConfig.absoluteEncoderVelocityPeriodMs(periodMilliseconds);
+                else
+                    signalsConfig.primaryEncoderVelocityPeriodMs(periodMilliseconds);
+            }
+            case OUTPUT_CURRENT -> signalsConfig.outputCurrentPeriodMs(periodMilliseconds);
+            case APPLIED_OUTPUT -> signalsConfig.appliedOutputPeriodMs(periodMilliseconds);
+            case BUS_VOLTAGE -> signalsConfig.busVoltagePeriodMs(periodMilliseconds);
+        }
+    }
+}
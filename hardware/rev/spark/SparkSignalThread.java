@@ -15,12 +15,13 @@ package frc.trigon.lib.hardware.rev.spark;
 
 import edu.wpi.first.wpilibj.Notifier;
 import edu.wpi.first.wpilibj.RobotController;
+import frc.trigon.lib.hardware.DoubleFrameRingBuffer;
+import frc.trigon.lib.hardware.RobotHardwareStats;
 import frc.trigon.lib.hardware.SignalThreadBase;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Queue;
-import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.function.DoubleSupplier;
 
 /**
@@ -28,12 +29,15 @@ import java.util.function.DoubleSupplier;
  *
  * <p>This version is intended for devices like the SparkMax that require polling rather than a
  * blocking thread. A Notifier thread is used to gather samples with consistent timing.
+ * The notifier is only started once the first threaded signal is registered, so motors that don't register threaded signals don't pay for it.
+ * Every sample is stamped with the FPGA time at which it was read. Samples are queued unconditionally, since the Spark's last error is shared with the main thread's calls to the same device,
+ * and therefore can't tell whether a specific read failed.
  */
 public class SparkSignalThread extends SignalThreadBase {
-    public static final boolean ACTIVE = false;
-    private final List<DoubleSupplier> signals = new ArrayList<>();
-    private final List<Queue<Double>> queues = new ArrayList<>();
     private static SparkSignalThread instance = null;
+    private final List<Runnable> threadFrequencyListeners = new CopyOnWriteArrayList<>();
+    private volatile SignalsSnapshot signalsSnapshot = new SignalsSnapshot(new DoubleSupplier[0], new String[0], new DoubleFrameRingBuffer[0]);
+    private Notifier notifier = null;
 
     public static SparkSignalThread getInstance() {
         if (instance == null)
@@ -43,40 +47,131 @@ public class SparkSignalThread extends SignalThreadBase {
 
     private SparkSignalThread() {
         super("SparkSignalThread");
-        if (ACTIVE) {
-            Notifier notifier = new Notifier(this::periodic);
-            notifier.setName("SparkSignalThread");
-            notifier.startPeriodic(1.0 / super.threadFrequencyHertz);
+    }
+
+    /**
+     * Sets the thread frequency in hertz. Takes effect immediately, even if the thread is already running.
+     * In simulation the frequency is always 50 hertz, since the simulated Spark values only change once every robot loop.
+     * The listeners added with {@link #addThreadFrequencyListener(Runnable)} are notified if the frequency changed, so the motors can update the periods of their threaded signals' status frames.
+     *
+     * @param threadFrequencyHertz the odometry frequency in hertz
+     */
+    @Override
+    public void setThreadFrequencyHertz(double threadFrequencyHertz) {
+        final boolean hasFrequencyChanged = threadFrequencyHertz != getThreadFrequencyHertz();
+        super.setThreadFrequencyHertz(threadFrequencyHertz);
+        signalsRegisteringLock.lock();
+        try {
+            if (notifier != null)
+                notifier.startPeriodic(1.0 / getSampledFrequencyHertz());
+        } finally {
+            signalsRegisteringLock.unlock();
+        }
+
+        if (hasFrequencyChanged) {
+            for (Runnable threadFrequencyListener : threadFrequencyListeners)
+                threadFrequencyListener.run();
         }
     }
 
     /**
-     * Registers a threaded signal to be read asynchronously.
+     * Adds a listener that's called whenever the thread frequency is changed with {@link #setThreadFrequencyHertz(double)}.
+     *
+     * @param threadFrequencyListener the listener to add
+     */
+    public void addThreadFrequencyListener(Runnable threadFrequencyListener) {
+        threadFrequencyListeners.add(threadFrequencyListener);
+    }
+
+    /**
+     * Registers a threaded signal to be read asynchronously, and starts the thread if it isn't running yet.
      * Threaded signals use threading to process certain signals separately at a faster rate.
      *
+     * Every sample is written as a single-value frame along with its FPGA timestamp, so a value and its timestamp are always published together.
+     *
+     * @param name   the name of the signal, used to log the queue's dropped samples
      * @param signal the signal to register
-     * @return the queue that the signal's values will be written to
+     * @param queue  the queue that the signal's values and their timestamps will be written to. Must have a frame size of 1
      */
-    public Queue<Double> registerThreadedSignal(DoubleSupplier signal) {
-        Queue<Double> queue = new ArrayBlockingQueue<>(100);
-        SIGNALS_REGISTERING_LOCK.lock();
+    public void registerThreadedSignal(String name, SparkStatusSignal signal, DoubleFrameRingBuffer queue) {
+        if (RobotHardwareStats.isReplay())
+            return;
+
+        signalsRegisteringLock.lock();
         try {
-            signals.add(signal);
-            queues.add(queue);
+            signalsSnapshot = signalsSnapshot.withSignal(signal.getValueSupplier(), name, queue);
+            startIfNeeded();
         } finally {
-            SIGNALS_REGISTERING_LOCK.unlock();
+            signalsRegisteringLock.unlock();
         }
-        return queue;
+    }
+
+    @Override
+    protected DoubleFrameRingBuffer[] getFrameQueues() {
+        return signalsSnapshot.queues;
+    }
+
+    @Override
+    protected String[] getQueueNames() {
+        return signalsSnapshot.queueNames;
+    }
+
+    private void startIfNeeded() {
+        if (notifier != null)
+            return;
+
+        notifier = new Notifier(this::periodic);
+        notifier.setName("SparkSignalThread");
+        notifier.startPeriodic(1.0 / getSampledFrequencyHertz());
+    }
+
+    private double getSampledFrequencyHertz() {
+        if (RobotHardwareStats.isSimulation()) // You can't run signals at a high frequency in simulation. A fast thread slows down the simulation.
+            return 50;
+        return threadFrequencyHertz;
     }
 
     private void periodic() {
-        SIGNALS_REGISTERING_LOCK.lock();
-        timestamps.offer(RobotController.getFPGATime() / 1.0e6);
-        try {
-            for (int i = 0; i < signals.size(); i++)
-                queues.get(i).offer(signals.get(i).getAsDouble());
-        } finally {
-            SIGNALS_REGISTERING_LOCK.unlock();
+        final SignalsSnapshot snapshot = signalsSnapshot;
+        final double loopTimestamp = RobotController.getFPGATime() / 1e6;
+        timestamps.offer(loopTimestamp);
+        recordLoop(loopTimestamp);
+
+        for (int i = 0; i < snapshot.signals.length; i++) {
+            final double value = snapshot.signals[i].getAsDouble();
+            final double sampleTimestamp = RobotController.getFPGATime() / 1e6;
+            snapshot.queues[i].putValue(0, value);
+            snapshot.queues[i].commitFrame(sampleTimestamp);
+        }
+    }
+
+    /**
+     * An immutable snapshot of the registered signals and the queues their values are written to.
+     * A new snapshot is created whenever a signal is registered, which lets the notifier read the signals without locking.
+     */
+    private static class SignalsSnapshot {
+        private final DoubleSupplier[] signals;
+        private final String[] queueNames;
+        private final DoubleFrameRingBuffer[] queues;
+
+        private SignalsSnapshot(DoubleSupplier[] signals, String[] queueNames, DoubleFrameRingBuffer[] queues) {
+            this.signals = signals;
+            this.queueNames = queueNames;
+            this.queues = queues;
+        }
+
+        private SignalsSnapshot withSignal(DoubleSupplier signal, String queueName, DoubleFrameRingBuffer queue) {
+            return new SignalsSnapshot(
+                    append(signals, signal),
+                    append(queueNames, queueName),
+                    append(queues, queue)
+            );
+        }
+
+        private static <T> T[] append(T[] array, T element) {
+            final T[] newArray = Arrays.copyOf(array, array.length + 1);
+            newArray[array.length] = element;
+            return newArray;
         }
     }
-}
\ No newline at end of file
+}
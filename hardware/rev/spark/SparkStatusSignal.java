@@ -1,12 +1,16 @@
 package frc.trigon.lib.hardware.rev.spark;
 
+import com.revrobotics.spark.SparkBase;
+
 import java.util.function.DoubleSupplier;
 
 public class SparkStatusSignal {
+    private final SparkBase spark;
     private final DoubleSupplier valueSupplier;
     private final String name;
 
-    public SparkStatusSignal(SparkSignal signal, DoubleSupplier valueSupplier) {
+    public SparkStatusSignal(SparkSignal signal, SparkBase spark, DoubleSupplier valueSupplier) {
+        this.spark = spark;
         this.valueSupplier = valueSupplier;
         this.name = signal.name;
     }
@@ -19,6 +23,13 @@ public class SparkStatusSignal {
         return valueSupplier;
     }
 
+    /**
+     * @return the Spark the signal is read from. Used to check whether the latest read was valid
+     */
+    public SparkBase getSpark() {
+        return spark;
+    }
+
     public String getName() {
         return name;
     }
@@ -1,6 +1,7 @@
 package frc.trigon.lib.hardware.rev.spark.io;
 
 import com.revrobotics.PersistMode;
+import com.revrobotics.REVLibError;
 import com.revrobotics.ResetMode;
 import com.revrobotics.spark.ClosedLoopSlot;
 import com.revrobotics.spark.SparkBase;
@@ -63,8 +64,8 @@ public class RealSparkIO extends SparkIO {
     }
 
     @Override
-    public void configure(SparkBaseConfig configuration, ResetMode resetMode, PersistMode persistMode) {
-        motor.configure(configuration, resetMode, persistMode);
+    public REVLibError configure(SparkBaseConfig configuration, ResetMode resetMode, PersistMode persistMode) {
+        return motor.configure(configuration, resetMode, persistMode);
     }
 
     @Override
@@ -1,6 +1,7 @@
 package frc.trigon.lib.hardware.rev.spark.io;
 
 import com.revrobotics.PersistMode;
+import com.revrobotics.REVLibError;
 import com.revrobotics.ResetMode;
 import com.revrobotics.sim.SparkAbsoluteEncoderSim;
 import com.revrobotics.spark.*;
@@ -10,7 +11,9 @@ import edu.wpi.first.math.system.plant.DCMotor;
 import frc.trigon.lib.hardware.RobotHardwareStats;
 import frc.trigon.lib.hardware.rev.spark.SparkIO;
 import frc.trigon.lib.hardware.rev.sparkencoder.SparkEncoder;
+import frc.trigon.lib.hardware.simulation.BatterySimulation;
 import frc.trigon.lib.hardware.simulation.MotorPhysicsSimulation;
+import frc.trigon.lib.hardware.simulation.SimulationEngine;
 import frc.trigon.lib.utilities.Conversions;
 
 public class SimulationSparkIO extends SparkIO {
@@ -89,30 +92,26 @@ public class SimulationSparkIO extends SparkIO {
         if (physicsSimulation == null)
             return;
 
-        updatePhysicsSimulation();
+        SimulationEngine.update();
         final double physicsSimulationVelocity = getPhysicsSimulationVelocity();
         updateMotorSimulation(physicsSimulationVelocity);
         updateEncoderSimulation(physicsSimulationVelocity);
     }
 
     @Override
-    public void configure(SparkBaseConfig configuration, ResetMode resetMode, PersistMode persistMode) {
-        motor.configure(configuration, resetMode, persistMode);
+    public REVLibError configure(SparkBaseConfig configuration, ResetMode resetMode, PersistMode persistMode) {
+        return motor.configure(configuration, resetMode, persistMode);
     }
 
     @Override
     public void setPhysicsSimulation(MotorPhysicsSimulation physicsSimulation, boolean isUsingAbsoluteEncoder) {
         this.physicsSimulation = physicsSimulation;
         this.isUsingAbsoluteEncoder = isUsingAbsoluteEncoder;
-    }
-
-    private void updatePhysicsSimulation() {
-        physicsSimulation.setInputVoltage(motorSimulation.getBusVoltage() * motorSimulation.getAppliedOutput());
-        physicsSimulation.updateMotor();
+        physicsSimulation.setInputVoltageSupplier(() -> motorSimulation.getBusVoltage() * motorSimulation.getAppliedOutput());
     }
 
     private void updateMotorSimulation(double physicsSimulationVelocityForSimulation) {
-        motorSimulation.iterate(physicsSimulationVelocityForSimulation, RobotHardwareStats.SUPPLY_VOLTAGE, RobotHardwareStats.getPeriodicTimeSeconds());
+        motorSimulation.iterate(physicsSimulationVelocityForSimulation, BatterySimulation.getBusVoltage(), RobotHardwareStats.getPeriodicTimeSeconds());
         motorSimulation.setMotorCurrent(physicsSimulation.getCurrent());
     }
 
@@ -0,0 +1,127 @@
+package frc.trigon.lib.hardware.simulation;
+
+import edu.wpi.first.wpilibj.simulation.SimHooks;
+import frc.trigon.lib.hardware.RobotHardwareStats;
+
+/**
+ * A class that runs the simulation faster than real time.
+ * The simulated clock is paused and advanced by one robot loop at a time, and every advance waits for the robot loop and the other notifiers to finish before the next one.
+ * The clock only starts being driven on the first robot loop, when the simulated motors first update the {@link SimulationEngine}, so the time spent constructing the robot doesn't count toward the simulated time budget.
+ * A robot without simulated motors is therefore never accelerated.
+ * The robot loop, the physics simulations, the gyro simulations and the signal threads all follow the simulated clock, so a 15 second autonomous routine finishes in a fraction of the time.
+ * <p>
+ * Phoenix 6 simulated devices don't follow the simulated clock. They run their control requests (including voltage and duty cycle), their closed loops and their status signals on the wall clock,
+ * so every mechanism built on TalonFX motors reads values that are older, in simulated time, the faster the simulation runs.
+ * The signals are published at 100 hertz in simulation, so running much faster than twice real time makes these mechanisms read stale values every loop.
+ * Use {@link #setMaximumSpeed(double)} to cap the speed when the simulation contains Phoenix 6 devices. Spark devices follow the simulated clock exactly.
+ */
+public class AcceleratedSimulation {
+    private static volatile boolean IS_RUNNING = false;
+    private static volatile double MAXIMUM_SPEED = Double.POSITIVE_INFINITY;
+    private static double MAXIMUM_SIMULATED_DURATION_SECONDS = Double.POSITIVE_INFINITY;
+    private static boolean IS_PENDING_START = false;
+    private static Thread DRIVER_THREAD = null;
+
+    /**
+     * Starts driving the simulated clock from the first robot loop, until {@link #stop()} is called.
+     * Should be called in the robot's init method, before creating any devices. Does nothing outside of simulation.
+     */
+    public static void start() {
+        start(Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Starts driving the simulated clock from the first robot loop, until the given amount of simulated time has passed, or {@link #stop()} is called.
+     * Once the time has passed, the simulated clock resumes running in real time. This is useful for running a routine in CI and checking its result afterward.
+     * Should be called in the robot's init method, before creating any devices. Does nothing outside of simulation.
+     *
+     * @param maximumSimulatedDurationSeconds the amount of simulated time, counted from the first robot loop, after which the simulation stops being accelerated
+     */
+    public static synchronized void start(double maximumSimulatedDurationSeconds) {
+        if (!RobotHardwareStats.isSimulation() || RobotHardwareStats.isReplay() || IS_RUNNING || IS_PENDING_START)
+            return;
+
+        MAXIMUM_SIMULATED_DURATION_SECONDS = maximumSimulatedDurationSeconds;
+        RobotHardwareStats.setAcceleratedSimulation(true);
+        IS_PENDING_START = true;
+    }
+
+    /**
+     * Stops driving the simulated clock, and resumes running it in real time.
+     */
+    public static synchronized void stop() {
+        IS_PENDING_START = false;
+        IS_RUNNING = false;
+    }
+
+    /**
+     * Caps how much faster than real time the simulation may run. The simulation still runs slower if the CPU can't keep up.
+     * A speed of about 2 is recommended for simulations that contain Phoenix 6 devices, since they don't follow the simulated clock.
+     *
+     * @param maximumSpeed the maximum ratio between the simulated time and the real time. Infinity (the default) runs as fast as the CPU allows
+     */
+    public static void setMaximumSpeed(double maximumSpeed) {
+        if (maximumSpeed <= 0)
+            throw new IllegalArgumentException("The maximum speed of the accelerated simulation must be positive, but was " + maximumSpeed + ".");
+        MAXIMUM_SPEED = maximumSpeed;
+    }
+
+    /**
+     * @return whether the simulated clock is currently driven faster than real time
+     */
+    public static boolean isRunning() {
+        return IS_RUNNING;
+    }
+
+    /**
+     * Starts driving the simulated clock if it was requested by {@link #start(double)} and hasn't started yet.
+     * Called by {@link SimulationEngine#update()}, which the simulated devices call on every robot loop.
+     */
+    static synchronized void onRobotLoop() {
+        if (!IS_PENDING_START)
+            return;
+
+        IS_PENDING_START = false;
+        final double maximumSimulatedTimeSeconds = RobotHardwareStats.getCurrentTimeSeconds() + MAXIMUM_SIMULATED_DURATION_SECONDS;
+        SimHooks.pauseTiming();
+        IS_RUNNING = true;
+        DRIVER_THREAD = new Thread(() -> driveClock(maximumSimulatedTimeSeconds), "AcceleratedSimulation");
+        DRIVER_THREAD.setDaemon(true);
+        DRIVER_THREAD.start();
+    }
+
+    private static void driveClock(double maximumSimulatedTimeSeconds) {
+        final long startNanoseconds = System.nanoTime();
+        final double startSimulatedTimeSeconds = RobotHardwareStats.getCurrentTimeSeconds();
+        while (IS_RUNNING && RobotHardwareStats.getCurrentTimeSeconds() < maximumSimulatedTimeSeconds) {
+            SimHooks.stepTiming(RobotHardwareStats.getPeriodicTimeSeconds());
+            waitForMaximumSpeed(startNanoseconds, RobotHardwareStats.getCurrentTimeSeconds() - startSimulatedTimeSeconds);
+        }
+
+        IS_RUNNING = false;
+        SimHooks.resumeTiming();
+    }
+
+    /**
+     * Sleeps until the real time that passed since the clock started being driven is enough for the simulated time to not exceed the maximum speed.
+     *
+     * @param startNanoseconds           the real time at which the clock started being driven
+     * @param simulatedTimePassedSeconds the simulated time that passed since the clock started being driven
+     */
+    private static void waitForMaximumSpeed(long startNanoseconds, double simulatedTimePassedSeconds) {
+        final double maximumSpeed = MAXIMUM_SPEED;
+        if (Double.isInfinite(maximumSpeed))
+            return;
+
+        final double realTimePassedSeconds = (System.nanoTime() - startNanoseconds) / 1e9;
+        final long sleepMilliseconds = (long) ((simulatedTimePassedSeconds / maximumSpeed - realTimePassedSeconds) * 1000);
+        if (sleepMilliseconds <= 0)
+            return;
+
+        try {
+            Thread.sleep(sleepMilliseconds);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package frc.trigon.lib.hardware.simulation;
+
+import edu.wpi.first.wpilibj.RobotController;
+import edu.wpi.first.wpilibj.simulation.RoboRioSim;
+import frc.trigon.lib.hardware.RobotHardwareStats;
+import org.littletonrobotics.junction.Logger;
+
+/**
+ * A class that simulates the battery, so the simulated devices see the bus voltage sag under load like on the real robot.
+ * Every time the {@link SimulationEngine} steps, the supply current of all the registered simulations is summed, and the bus voltage is calculated from the battery's internal resistance.
+ * The supply current of a motor is its stator current scaled by the portion of the bus voltage it applies.
+ * The voltage is fed to every simulated motor on the next loop, and to the roboRIO simulation so {@link RobotController#getBatteryVoltage()} reads it too.
+ * <p>
+ * This is opt-in. While disabled, the simulated devices are supplied with {@link RobotHardwareStats#SUPPLY_VOLTAGE}.
+ */
+public class BatterySimulation {
+    /**
+     * The default internal resistance of the battery, including the main breaker and the wiring, in ohms.
+     */
+    public static final double DEFAULT_RESISTANCE_OHMS = 0.02;
+    private static boolean IS_ENABLED = false;
+    private static double NOMINAL_VOLTAGE = RobotHardwareStats.SUPPLY_VOLTAGE;
+    private static double RESISTANCE_OHMS = DEFAULT_RESISTANCE_OHMS;
+    private static double ADDITIONAL_CURRENT_AMPERES = 0;
+    private static volatile double BUS_VOLTAGE = RobotHardwareStats.SUPPLY_VOLTAGE;
+
+    /**
+     * Sets whether the battery should be simulated.
+     *
+     * @param isEnabled whether the battery should be simulated
+     */
+    public static void setEnabled(boolean isEnabled) {
+        IS_ENABLED = isEnabled;
+        if (!isEnabled)
+            BUS_VOLTAGE = RobotHardwareStats.SUPPLY_VOLTAGE;
+    }
+
+    /**
+     * @return whether the battery is simulated, as set in {@link #setEnabled(boolean)}
+     */
+    public static boolean isEnabled() {
+        return IS_ENABLED;
+    }
+
+    /**
+     * Sets the properties of the simulated battery.
+     *
+     * @param nominalVoltage the voltage of the battery with no load
+     * @param resistanceOhms the internal resistance of the battery, including the main breaker and the wiring
+     */
+    public static void setBatteryProperties(double nominalVoltage, double resistanceOhms) {
+        NOMINAL_VOLTAGE = nominalVoltage;
+        RESISTANCE_OHMS = resistanceOhms;
+    }
+
+    /**
+     * Sets a constant current that's drawn in addition to the simulated mechanisms, such as the current of the roboRIO, the radio and other electronics.
+     *
+     * @param additionalCurrentAmperes the additional current
+     */
+    public static void setAdditionalCurrent(double additionalCurrentAmperes) {
+        ADDITIONAL_CURRENT_AMPERES = additionalCurrentAmperes;
+    }
+
+    /**
+     * @return the voltage the simulated devices are supplied with
+     */
+    public static double getBusVoltage() {
+        return BUS_VOLTAGE;
+    }
+
+    /**
+     * Calculates the bus voltage from the power drawn by the given simulations, and logs the battery's state under "Battery/".
+     * The motor controllers draw a constant power from the bus, so the supply current rises as the voltage sags: V = V_nominal - R * (P / V + I_additional).
+     * The bus voltage is the higher root of that equation. If there's no root, the load is more than the battery can supply, and the voltage collapses to half the unloaded voltage.
+     * The power is signed, so a regenerating motor (such as one that brakes a moving mechanism) supplies power that offsets the draw of the others.
+     * The total is clamped at zero, so regeneration never charges the battery or lifts the voltage above the unloaded voltage.
+     *
+     * @param simulations the simulations that draw current from the battery
+     */
+    static void update(MotorPhysicsSimulation[] simulations) {
+        if (!IS_ENABLED)
+            return;
+
+        double totalPowerWatts = 0;
+        for (MotorPhysicsSimulation simulation : simulations)
+            totalPowerWatts += simulation.getSupplyPowerWatts();
+        totalPowerWatts = Math.max(0, totalPowerWatts);
+
+        final double unloadedVoltage = NOMINAL_VOLTAGE - ADDITIONAL_CURRENT_AMPERES * RESISTANCE_OHMS;
+        final double discriminant = unloadedVoltage * unloadedVoltage - 4 * RESISTANCE_OHMS * totalPowerWatts;
+        BUS_VOLTAGE = Math.max(0, (unloadedVoltage + Math.sqrt(Math.max(0, discriminant))) / 2);
+        final double totalCurrentAmperes = BUS_VOLTAGE == 0 ? 0 : ADDITIONAL_CURRENT_AMPERES + totalPowerWatts / BUS_VOLTAGE;
+        RoboRioSim.setVInVoltage(BUS_VOLTAGE);
+
+        Logger.recordOutput("Battery/VoltageVolts", BUS_VOLTAGE);
+        Logger.recordOutput("Battery/TotalCurrentAmperes", totalCurrentAmperes);
+        Logger.recordOutput("Battery/IsBrownedOut", BUS_VOLTAGE < RobotController.getBrownoutVoltage());
+    }
+}
@@ -0,0 +1,256 @@
+package frc.trigon.lib.hardware.simulation;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.system.plant.DCMotor;
+import edu.wpi.first.math.util.Units;
+import frc.trigon.lib.hardware.RobotHardwareStats;
+
+/**
+ * A class that represents a physics simulation of a double jointed arm mechanism.
+ * The joints are coupled, since the second joint's inertia and gravity load depend on both angles, so the arm is integrated as a whole using RK4.
+ * Every joint is exposed as a {@link MotorPhysicsSimulation}, so it can be set as the physics simulation of the joint's motor.
+ * <p>
+ * The angle of the first joint is relative to the horizon, and the angle of the second joint is relative to the first joint, like in {@link frc.trigon.lib.utilities.mechanisms.DoubleJointedArmMechanism2d}.
+ * Both joints are modeled as uniform rods. The constant inertia terms are calculated once, and the trigonometric terms once per evaluation, so the arm is cheap enough to sub-step using {@link #setSubSteps(int)}.
+ */
+public class DoubleJointedArmSimulation {
+    private static final double GRAVITY_METERS_PER_SECOND_SQUARED = 9.80665;
+    private static final int
+            FIRST_JOINT_ANGLE = 0,
+            SECOND_JOINT_ANGLE = 1,
+            FIRST_JOINT_VELOCITY = 2,
+            SECOND_JOINT_VELOCITY = 3,
+            STATE_SIZE = 4;
+    private final JointProperties firstJointProperties, secondJointProperties;
+    private final double gravityMultiplier;
+    private final double firstJointConstantInertia, secondJointInertia, couplingInertia, firstJointGravityTorque, secondJointGravityTorque;
+    private final JointSimulation firstJointSimulation, secondJointSimulation;
+    private final double[] state = new double[STATE_SIZE], currentsAmperes = new double[2];
+    private final double[]
+            firstDerivative = new double[STATE_SIZE],
+            secondDerivative = new double[STATE_SIZE],
+            thirdDerivative = new double[STATE_SIZE],
+            fourthDerivative = new double[STATE_SIZE],
+            intermediateState = new double[STATE_SIZE];
+    private int subSteps = 1;
+
+    /**
+     * Creates a new DoubleJointedArmSimulation. The arm starts at rest, with both joints at their minimum angles.
+     *
+     * @param firstJointProperties  the properties of the first joint, which is mounted on the robot
+     * @param secondJointProperties the properties of the second joint, which is mounted at the end of the first joint
+     * @param simulateGravity       whether to simulate gravity or not
+     */
+    public DoubleJointedArmSimulation(JointProperties firstJointProperties, JointProperties secondJointProperties, boolean simulateGravity) {
+        this.firstJointProperties = firstJointProperties;
+        this.secondJointProperties = secondJointProperties;
+        this.gravityMultiplier = simulateGravity ? GRAVITY_METERS_PER_SECOND_SQUARED : 0;
+
+        final double firstLength = firstJointProperties.lengthMeters(), firstMass = firstJointProperties.massKilograms();
+        final double secondLength = secondJointProperties.lengthMeters(), secondMass = secondJointProperties.massKilograms();
+        final double firstCenterOfMassInertia = firstMass * firstLength * firstLength / 12;
+        final double secondCenterOfMassInertia = secondMass * secondLength * secondLength / 12;
+        secondJointInertia = secondMass * secondLength * secondLength / 4 + secondCenterOfMassInertia;
+        firstJointConstantInertia = firstMass * firstLength * firstLength / 4 + firstCenterOfMassInertia + secondMass * firstLength * firstLength + secondJointInertia;
+        couplingInertia = secondMass * firstLength * secondLength / 2;
+        firstJointGravityTorque = (firstMass / 2 + secondMass) * firstLength * gravityMultiplier;
+        secondJointGravityTorque = secondMass * secondLength / 2 * gravityMultiplier;
+
+        state[FIRST_JOINT_ANGLE] = firstJointProperties.minimumAngle().getRadians();
+        state[SECOND_JOINT_ANGLE] = secondJointProperties.minimumAngle().getRadians();
+        firstJointSimulation = new JointSimulation(firstJointProperties.gearRatio(), FIRST_JOINT_ANGLE, FIRST_JOINT_VELOCITY, 0);
+        secondJointSimulation = new JointSimulation(secondJointProperties.gearRatio(), SECOND_JOINT_ANGLE, SECOND_JOINT_VELOCITY, 1);
+
+        SimulationEngine.registerStep(this::update);
+    }
+
+    /**
+     * Sets the amount of fixed RK4 steps the arm is integrated in every robot loop.
+     *
+     * @param subSteps the amount of steps per robot loop
+     */
+    public void setSubSteps(int subSteps) {
+        this.subSteps = Math.max(1, subSteps);
+    }
+
+    /**
+     * Gets the simulation of the first joint's motor. Its system position is the first joint's angle relative to the horizon, in rotations.
+     *
+     * @return the simulation of the first joint
+     */
+    public MotorPhysicsSimulation getFirstJointSimulation() {
+        return firstJointSimulation;
+    }
+
+    /**
+     * Gets the simulation of the second joint's motor. Its system position is the second joint's angle relative to the first joint, in rotations.
+     *
+     * @return the simulation of the second joint
+     */
+    public MotorPhysicsSimulation getSecondJointSimulation() {
+        return secondJointSimulation;
+    }
+
+    private synchronized void update() {
+        final double firstJointVoltage = firstJointSimulation.getInputVoltage(), secondJointVoltage = secondJointSimulation.getInputVoltage();
+        final double subStepTimeSeconds = RobotHardwareStats.getPeriodicTimeSeconds() / subSteps;
+        for (int i = 0; i < subSteps; i++)
+            step(firstJointVoltage, secondJointVoltage, subStepTimeSeconds);
+
+        currentsAmperes[0] = calculateCurrent(firstJointProperties, state[FIRST_JOINT_VELOCITY], firstJointVoltage);
+        currentsAmperes[1] = calculateCurrent(secondJointProperties, state[SECOND_JOINT_VELOCITY], secondJointVoltage);
+    }
+
+    private void step(double firstJointVoltage, double secondJointVoltage, double timeSeconds) {
+        calculateDerivative(state, firstJointVoltage, secondJointVoltage, firstDerivative);
+        offsetState(firstDerivative, timeSeconds / 2);
+        calculateDerivative(intermediateState, firstJointVoltage, secondJointVoltage, secondDerivative);
+        offsetState(secondDerivative, timeSeconds / 2);
+        calculateDerivative(intermediateState, firstJointVoltage, secondJointVoltage, thirdDerivative);
+        offsetState(thirdDerivative, timeSeconds);
+        calculateDerivative(intermediateState, firstJointVoltage, secondJointVoltage, fourthDerivative);
+
+        for (int i = 0; i < STATE_SIZE; i++)
+            state[i] += (firstDerivative[i] + 2 * secondDerivative[i] + 2 * thirdDerivative[i] + fourthDerivative[i]) * timeSeconds / 6;
+
+        applyLimits(firstJointProperties, FIRST_JOINT_ANGLE, FIRST_JOINT_VELOCITY);
+        applyLimits(secondJointProperties, SECOND_JOINT_ANGLE, SECOND_JOINT_VELOCITY);
+    }
+
+    private void offsetState(double[] derivative, double timeSeconds) {
+        for (int i = 0; i < STATE_SIZE; i++)
+            intermediateState[i] = state[i] + derivative[i] * timeSeconds;
+    }
+
+    /**
+     * Calculates the derivative of the arm's state from the manipulator equation, M(q) * q'' = τ - C(q, q') * q' - G(q).
+     *
+     * @param evaluatedState     the state to evaluate the derivative at
+     * @param firstJointVoltage  the voltage applied to the first joint's motor
+     * @param secondJointVoltage the voltage applied to the second joint's motor
+     * @param derivative         the array to write the derivative to
+     */
+    private void calculateDerivative(double[] evaluatedState, double firstJointVoltage, double secondJointVoltage, double[] derivative) {
+        final double firstVelocity = evaluatedState[FIRST_JOINT_VELOCITY], secondVelocity = evaluatedState[SECOND_JOINT_VELOCITY];
+        final double cosSecondAngle = Math.cos(evaluatedState[SECOND_JOINT_ANGLE]), sinSecondAngle = Math.sin(evaluatedState[SECOND_JOINT_ANGLE]);
+        final double cosFirstAngle = Math.cos(evaluatedState[FIRST_JOINT_ANGLE]);
+        final double cosAbsoluteSecondAngle = Math.cos(evaluatedState[FIRST_JOINT_ANGLE] + evaluatedState[SECOND_JOINT_ANGLE]);
+
+        final double coupledInertia = couplingInertia * cosSecondAngle;
+        final double firstInertia = firstJointConstantInertia + 2 * coupledInertia;
+        final double crossInertia = secondJointInertia + coupledInertia;
+        final double coriolisTerm = couplingInertia * sinSecondAngle;
+
+        final double firstTorque = calculateTorque(firstJointProperties, firstVelocity, firstJointVoltage)
+                + coriolisTerm * secondVelocity * (2 * firstVelocity + secondVelocity)
+                - firstJointGravityTorque * cosFirstAngle - secondJointGravityTorque * cosAbsoluteSecondAngle;
+        final double secondTorque = calculateTorque(secondJointProperties, secondVelocity, secondJointVoltage)
+                - coriolisTerm * firstVelocity * firstVelocity
+                - secondJointGravityTorque * cosAbsoluteSecondAngle;
+
+        final double determinant = firstInertia * secondJointInertia - crossInertia * crossInertia;
+        derivative[FIRST_JOINT_ANGLE] = firstVelocity;
+        derivative[SECOND_JOINT_ANGLE] = secondVelocity;
+        derivative[FIRST_JOINT_VELOCITY] = (secondJointInertia * firstTorque - crossInertia * secondTorque) / determinant;
+        derivative[SECOND_JOINT_VELOCITY] = (firstInertia * secondTorque - crossInertia * firstTorque) / determinant;
+    }
+
+    private double calculateTorque(JointProperties jointProperties, double jointVelocityRadiansPerSecond, double voltage) {
+        return jointProperties.gearbox().getTorque(calculateCurrent(jointProperties, jointVelocityRadiansPerSecond, voltage)) * jointProperties.gearRatio();
+    }
+
+    private double calculateCurrent(JointProperties jointProperties, double jointVelocityRadiansPerSecond, double voltage) {
+        return jointProperties.gearbox().getCurrent(jointVelocityRadiansPerSecond * jointProperties.gearRatio(), voltage);
+    }
+
+    private void applyLimits(JointProperties jointProperties, int angleIndex, int velocityIndex) {
+        final double minimumAngleRadians = jointProperties.minimumAngle().getRadians(), maximumAngleRadians = jointProperties.maximumAngle().getRadians();
+        if (state[angleIndex] <= minimumAngleRadians || state[angleIndex] >= maximumAngleRadians) {
+            state[angleIndex] = MathUtil.clamp(state[angleIndex], minimumAngleRadians, maximumAngleRadians);
+            state[velocityIndex] = 0;
+        }
+    }
+
+    /**
+     * The physical properties of a joint of the arm.
+     *
+     * @param gearbox       the motor(s) used to control the joint
+     * @param gearRatio     the gearbox's gear ratio
+     * @param lengthMeters  the length of the joint in meters
+     * @param massKilograms the mass of the joint in kilograms
+     * @param minimumAngle  the minimum angle of the joint
+     * @param maximumAngle  the maximum angle of the joint
+     */
+    public record JointProperties(DCMotor gearbox, double gearRatio, double lengthMeters, double massKilograms, Rotation2d minimumAngle, Rotation2d maximumAngle) {
+    }
+
+    /**
+     * A view of one of the arm's joints. The input voltage is gathered by the {@link SimulationEngine}, and the state is read from the arm's state.
+     * It isn't stepped on its own, since the arm steps both of its joints together, so {@link #updateMotor()} does nothing.
+     * Sub-steps are set on the whole arm, and the input voltage can't be interpolated, since the arm holds both voltages for the entire loop.
+     */
+    private class JointSimulation extends MotorPhysicsSimulation {
+        private final int angleIndex, velocityIndex, currentIndex;
+
+        private JointSimulation(double gearRatio, int angleIndex, int velocityIndex, int currentIndex) {
+            super(gearRatio);
+            this.angleIndex = angleIndex;
+            this.velocityIndex = velocityIndex;
+            this.currentIndex = currentIndex;
+        }
+
+        @Override
+        public double getCurrent() {
+            return currentsAmperes[currentIndex];
+        }
+
+        @Override
+        public double getSystemPositionRotations() {
+            return Units.radiansToRotations(state[angleIndex]);
+        }
+
+        @Override
+        public double getSystemVelocityRotationsPerSecond() {
+            return Units.radiansToRotations(state[velocityIndex]);
+        }
+
+        @Override
+        boolean isSteppedIndependently() {
+            return false;
+        }
+
+        /**
+         * The current is the signed stator current, so unlike the WPILib simulations the power is the current times the signed voltage.
+         */
+        @Override
+        double getSupplyPowerWatts() {
+            return getCurrent() * getInputVoltage();
+        }
+
+        /**
+         * Sets the sub-steps of the whole arm, since its joints are integrated together.
+         */
+        @Override
+        public void setSubSteps(int subSteps) {
+            DoubleJointedArmSimulation.this.setSubSteps(subSteps);
+        }
+
+        /**
+         * Not supported, since the arm holds both voltages for the entire loop. A warning is printed if interpolation is enabled.
+         */
+        @Override
+        public void setInterpolatingVoltage(boolean isInterpolatingVoltage) {
+            if (isInterpolatingVoltage)
+                System.out.println("The joints of a DoubleJointedArmSimulation don't support interpolating the input voltage, so it's held for the entire loop.");
+        }
+
+        @Override
+        void setSimulationInputVoltage(double voltage) {
+        }
+
+        @Override
+        void updateSimulation(double timeSeconds) {
+        }
+    }
+}
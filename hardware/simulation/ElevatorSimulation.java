@@ -2,7 +2,6 @@ package frc.trigon.lib.hardware.simulation;
 
 import edu.wpi.first.math.system.plant.DCMotor;
 import edu.wpi.first.wpilibj.simulation.ElevatorSim;
-import frc.trigon.lib.hardware.RobotHardwareStats;
 import frc.trigon.lib.utilities.Conversions;
 
 /**
@@ -64,21 +63,13 @@ public class ElevatorSimulation extends MotorPhysicsSimulation {
         return Conversions.distanceToRotations(elevatorSimulation.getVelocityMetersPerSecond(), diameterMeters);
     }
 
-    /**
-     * Sets the input voltage of the elevator.
-     *
-     * @param voltage the voltage to set
-     */
     @Override
-    public void setInputVoltage(double voltage) {
+    void setSimulationInputVoltage(double voltage) {
         elevatorSimulation.setInputVoltage(voltage);
     }
 
-    /**
-     * Updates the elevator simulation.
-     */
     @Override
-    public void updateMotor() {
-        elevatorSimulation.update(RobotHardwareStats.getPeriodicTimeSeconds());
+    void updateSimulation(double timeSeconds) {
+        elevatorSimulation.update(timeSeconds);
     }
 }
\ No newline at end of file
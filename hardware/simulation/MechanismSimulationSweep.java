@@ -0,0 +1,232 @@
+package frc.trigon.lib.hardware.simulation;
+
+import edu.wpi.first.math.MathUtil;
+import frc.trigon.lib.hardware.RobotHardwareStats;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Function;
+
+/**
+ * A class that runs a closed-loop setpoint test on many independent mechanism simulations, one for every point of a parameter space, in parallel on all the CPU cores.
+ * Every point is a set of parameters (like a mass, a gear ratio and gains), which is used to create the point's simulation and controller.
+ * The test starts every simulation at rest, commands it to the setpoint, and measures the settling time, the overshoot and the peak current.
+ * <p>
+ * The simulations aren't registered to the {@link SimulationEngine}, and they're stepped with {@link RobotHardwareStats#getPeriodicTimeSeconds()} like in the robot loop, so sub-steps set on them are respected.
+ * <p>
+ * Example usage:
+ * <pre>{@code
+ * final MechanismSimulationSweep sweep = new MechanismSimulationSweep(
+ *         new String[]{"MassKilograms", "P"},
+ *         parameters -> new ElevatorSimulation(DCMotor.getKrakenX60(2), 10, parameters[0], 0.02, 0, 1.5, true),
+ *         parameters -> {
+ *             final PIDController controller = new PIDController(parameters[1], 0, 0);
+ *             return (setpoint, position, velocity) -> controller.calculate(position, setpoint);
+ *         }
+ * );
+ * System.out.println(MechanismSimulationSweep.toTable(sweep.run(MechanismSimulationSweep.createGrid(new double[]{3, 5, 7}, new double[]{10, 20, 40}), 5, 3, 0.05)));
+ * }</pre>
+ */
+public class MechanismSimulationSweep {
+    private final String[] parameterNames;
+    private final Function<double[], MotorPhysicsSimulation> simulationFactory;
+    private final Function<double[], SweepController> controllerFactory;
+
+    /**
+     * Creates a new MechanismSimulationSweep.
+     *
+     * @param parameterNames    the names of the parameters of every point, used as the headers of the table
+     * @param simulationFactory creates the simulation of a point from its parameters. Called on the sweep's threads, so it must not share state between points.
+     *                          Must be a simulation that's stepped on its own, and not a part of a coupled system like a joint of a {@link DoubleJointedArmSimulation}
+     * @param controllerFactory creates the controller of a point from its parameters. Called on the sweep's threads, so it must not share state between points
+     */
+    public MechanismSimulationSweep(String[] parameterNames, Function<double[], MotorPhysicsSimulation> simulationFactory, Function<double[], SweepController> controllerFactory) {
+        this.parameterNames = parameterNames;
+        this.simulationFactory = simulationFactory;
+        this.controllerFactory = controllerFactory;
+    }
+
+    /**
+     * Creates the points of a grid, which hold every combination of the given values.
+     *
+     * @param parameterValues the values of every parameter, ordered like the parameter names
+     * @return the points of the grid
+     */
+    public static List<double[]> createGrid(double[]... parameterValues) {
+        List<double[]> points = new ArrayList<>();
+        points.add(new double[0]);
+        for (double[] values : parameterValues) {
+            final List<double[]> extendedPoints = new ArrayList<>(points.size() * values.length);
+            for (double[] point : points) {
+                for (double value : values) {
+                    final double[] extendedPoint = Arrays.copyOf(point, point.length + 1);
+                    extendedPoint[point.length] = value;
+                    extendedPoints.add(extendedPoint);
+                }
+            }
+            points = extendedPoints;
+        }
+        return points;
+    }
+
+    /**
+     * Creates points with parameters that are uniformly distributed between the given bounds, for Monte Carlo sweeps.
+     *
+     * @param pointCount        the amount of points to create
+     * @param seed              the seed of the random generator, so a sweep can be reproduced
+     * @param minimumParameters the minimum value of every parameter, ordered like the parameter names
+     * @param maximumParameters the maximum value of every parameter, ordered like the parameter names
+     * @return the random points
+     */
+    public static List<double[]> createRandomPoints(int pointCount, long seed, double[] minimumParameters, double[] maximumParameters) {
+        final Random random = new Random(seed);
+        final List<double[]> points = new ArrayList<>(pointCount);
+        for (int i = 0; i < pointCount; i++) {
+            final double[] point = new double[minimumParameters.length];
+            for (int j = 0; j < point.length; j++)
+                point[j] = minimumParameters[j] + random.nextDouble() * (maximumParameters[j] - minimumParameters[j]);
+            points.add(point);
+        }
+        return points;
+    }
+
+    /**
+     * Formats the results as a comma separated table, with a header row followed by a row for every point.
+     *
+     * @param results the results to format
+     * @return the table
+     */
+    public static String toTable(SweepResult[] results) {
+        final StringBuilder table = new StringBuilder();
+        if (results.length == 0)
+            return table.toString();
+
+        for (String parameterName : results[0].parameterNames())
+            table.append(parameterName).append(',');
+        table.append("SettlingTimeSeconds,OvershootRotations,PeakCurrentAmperes\n");
+        for (SweepResult result : results) {
+            for (double parameter : result.parameters())
+                table.append(parameter).append(',');
+            table.append(result.settlingTimeSeconds()).append(',')
+                    .append(result.overshootRotations()).append(',')
+                    .append(result.peakCurrentAmperes()).append('\n');
+        }
+        return table.toString();
+    }
+
+    /**
+     * Runs the setpoint test on every point in parallel, and blocks until all the points are done.
+     *
+     * @param points             the points to test
+     * @param setpointRotations  the setpoint of the test, in the simulation's system rotations
+     * @param durationSeconds    the duration of the test
+     * @param toleranceRotations the maximum distance from the setpoint at which the mechanism is considered settled
+     * @return the results of the points, ordered like the points
+     * @throws IllegalArgumentException if the simulation factory creates a simulation that's part of a coupled system, which can't be stepped on its own
+     */
+    public SweepResult[] run(List<double[]> points, double setpointRotations, double durationSeconds, double toleranceRotations) {
+        final SweepResult[] results = new SweepResult[points.size()];
+        final ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        try {
+            pool.invoke(new SweepTask(points, results, 0, points.size(), setpointRotations, durationSeconds, toleranceRotations));
+        } finally {
+            pool.shutdown();
+        }
+        return results;
+    }
+
+    private SweepResult runPoint(double[] parameters, double setpointRotations, double durationSeconds, double toleranceRotations) {
+        final MotorPhysicsSimulation simulation = SimulationEngine.createUnregistered(() -> simulationFactory.apply(parameters));
+        if (!simulation.isSteppedIndependently())
+            throw new IllegalArgumentException("Sweep simulations must be stepped on their own, but a " + simulation.getClass().getSimpleName() + " is stepped as part of a coupled system.");
+        final SweepController controller = controllerFactory.apply(parameters);
+        final double periodicTimeSeconds = RobotHardwareStats.getPeriodicTimeSeconds();
+        final double initialPositionRotations = simulation.getSystemPositionRotations();
+        final double direction = Math.signum(setpointRotations - initialPositionRotations);
+        final long stepCount = Math.round(durationSeconds / periodicTimeSeconds);
+        long lastUnsettledStep = 0;
+        double overshootRotations = 0, peakCurrentAmperes = 0;
+
+        for (long step = 1; step <= stepCount; step++) {
+            final double voltage = controller.calculateVoltage(setpointRotations, simulation.getSystemPositionRotations(), simulation.getSystemVelocityRotationsPerSecond());
+            simulation.setInputVoltage(MathUtil.clamp(voltage, -RobotHardwareStats.SUPPLY_VOLTAGE, RobotHardwareStats.SUPPLY_VOLTAGE));
+            simulation.updateMotor();
+
+            final double errorRotations = setpointRotations - simulation.getSystemPositionRotations();
+            if (Math.abs(errorRotations) > toleranceRotations)
+                lastUnsettledStep = step;
+            overshootRotations = Math.max(overshootRotations, -errorRotations * direction);
+            peakCurrentAmperes = Math.max(peakCurrentAmperes, Math.abs(simulation.getCurrent()));
+        }
+
+        final double settlingTimeSeconds = lastUnsettledStep == stepCount && stepCount != 0 ? Double.POSITIVE_INFINITY : lastUnsettledStep * periodicTimeSeconds;
+        return new SweepResult(parameterNames, parameters, settlingTimeSeconds, overshootRotations, peakCurrentAmperes);
+    }
+
+    /**
+     * A controller that's tested by the sweep. Called once every robot loop, with the mechanism's state in the simulation's system rotations.
+     */
+    @FunctionalInterface
+    public interface SweepController {
+        /**
+         * Calculates the voltage to apply to the mechanism. The voltage is clamped to the supply voltage.
+         *
+         * @param setpointRotations          the setpoint of the test
+         * @param positionRotations          the current position of the mechanism
+         * @param velocityRotationsPerSecond the current velocity of the mechanism
+         * @return the voltage to apply
+         */
+        double calculateVoltage(double setpointRotations, double positionRotations, double velocityRotationsPerSecond);
+    }
+
+    /**
+     * The result of the setpoint test of a single point.
+     *
+     * @param parameterNames      the names of the point's parameters
+     * @param parameters          the parameters of the point
+     * @param settlingTimeSeconds the time after which the mechanism stayed within the tolerance of the setpoint, or infinity if it didn't settle by the end of the test
+     * @param overshootRotations  the maximum distance the mechanism passed the setpoint by
+     * @param peakCurrentAmperes  the maximum absolute current drawn during the test
+     */
+    public record SweepResult(String[] parameterNames, double[] parameters, double settlingTimeSeconds, double overshootRotations, double peakCurrentAmperes) {
+    }
+
+    /**
+     * A task that tests a range of points, splitting it in half until it holds a single point.
+     */
+    private class SweepTask extends RecursiveAction {
+        private final List<double[]> points;
+        private final SweepResult[] results;
+        private final int fromIndex, toIndex;
+        private final double setpointRotations, durationSeconds, toleranceRotations;
+
+        private SweepTask(List<double[]> points, SweepResult[] results, int fromIndex, int toIndex, double setpointRotations, double durationSeconds, double toleranceRotations) {
+            this.points = points;
+            this.results = results;
+            this.fromIndex = fromIndex;
+            this.toIndex = toIndex;
+            this.setpointRotations = setpointRotations;
+            this.durationSeconds = durationSeconds;
+            this.toleranceRotations = toleranceRotations;
+        }
+
+        @Override
+        protected void compute() {
+            if (toIndex - fromIndex <= 1) {
+                if (toIndex > fromIndex)
+                    results[fromIndex] = runPoint(points.get(fromIndex), setpointRotations, durationSeconds, toleranceRotations);
+                return;
+            }
+
+            final int middleIndex = (fromIndex + toIndex) >>> 1;
+            invokeAll(
+                    new SweepTask(points, results, fromIndex, middleIndex, setpointRotations, durationSeconds, toleranceRotations),
+                    new SweepTask(points, results, middleIndex, toIndex, setpointRotations, durationSeconds, toleranceRotations)
+            );
+        }
+    }
+}
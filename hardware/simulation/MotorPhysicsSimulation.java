@@ -1,13 +1,27 @@
 package frc.trigon.lib.hardware.simulation;
 
+import frc.trigon.lib.hardware.RobotHardwareStats;
+
+import java.util.function.DoubleSupplier;
+
 /**
  * An abstract class to simulate the physics of a motor.
+ * Every update integrates the simulation over one robot loop. The loop can be split into several fixed sub-steps using {@link #setSubSteps(int)},
+ * which keeps stiff mechanisms and high-gain closed loops stable without running the whole robot loop faster.
+ * Every simulation is registered to the {@link SimulationEngine} when it's created, which steps it once every robot loop.
  */
 public abstract class MotorPhysicsSimulation {
     private final double gearRatio;
+    private final boolean isRegistered;
+    private boolean hasWarnedAboutSteppingOutsideEngine = false;
+    private int subSteps = 1;
+    private boolean isInterpolatingVoltage = false;
+    private double inputVoltage = 0, previousInputVoltage = 0;
+    private DoubleSupplier inputVoltageSupplier = null;
 
     MotorPhysicsSimulation(double gearRatio) {
         this.gearRatio = gearRatio;
+        this.isRegistered = SimulationEngine.register(this);
     }
 
     public double getRotorPositionRotations() {
@@ -18,13 +32,116 @@ public abstract class MotorPhysicsSimulation {
         return getSystemVelocityRotationsPerSecond() * gearRatio;
     }
 
+    /**
+     * Sets the amount of fixed steps the simulation is integrated in every robot loop.
+     *
+     * @param subSteps the amount of steps per robot loop. 1 integrates the whole loop in a single step
+     */
+    public void setSubSteps(int subSteps) {
+        this.subSteps = Math.max(1, subSteps);
+    }
+
+    /**
+     * Sets whether the input voltage should be interpolated across the sub-steps of a loop.
+     * When enabled, the voltage ramps linearly from the previous loop's voltage to the current one. Otherwise, the current voltage is held for the entire loop, like a real motor controller.
+     *
+     * @param isInterpolatingVoltage whether the input voltage should be interpolated
+     */
+    public void setInterpolatingVoltage(boolean isInterpolatingVoltage) {
+        this.isInterpolatingVoltage = isInterpolatingVoltage;
+    }
+
+    /**
+     * Sets the input voltage of the motor. The voltage is applied on the next update.
+     *
+     * @param voltage the voltage to set
+     */
+    public void setInputVoltage(double voltage) {
+        inputVoltage = voltage;
+    }
+
+    /**
+     * Sets the supplier the input voltage is gathered from right before every update. This is set by the simulated device that drives the simulation.
+     * If several devices share the simulation, the last one to set its supplier drives it.
+     *
+     * @param inputVoltageSupplier supplies the input voltage, or null to only use {@link #setInputVoltage(double)}
+     */
+    public void setInputVoltageSupplier(DoubleSupplier inputVoltageSupplier) {
+        this.inputVoltageSupplier = inputVoltageSupplier;
+    }
+
+    /**
+     * Updates the simulation over one robot loop, in the configured amount of sub-steps.
+     * This is called by the {@link SimulationEngine}, and shouldn't be called directly, since it would step the simulation twice in the same loop.
+     */
+    public void updateMotor() {
+        warnIfSteppedOutsideEngine();
+        final double subStepTimeSeconds = RobotHardwareStats.getPeriodicTimeSeconds() / subSteps;
+        for (int i = 1; i <= subSteps; i++) {
+            setSimulationInputVoltage(isInterpolatingVoltage ? previousInputVoltage + (inputVoltage - previousInputVoltage) * i / subSteps : inputVoltage);
+            updateSimulation(subStepTimeSeconds);
+        }
+        previousInputVoltage = inputVoltage;
+    }
+
+    /**
+     * @return whether the {@link SimulationEngine} should step this simulation on its own. False for simulations that are stepped as part of a coupled system
+     */
+    boolean isSteppedIndependently() {
+        return true;
+    }
+
+    /**
+     * @return the latest input voltage that was set or gathered
+     */
+    double getInputVoltage() {
+        return inputVoltage;
+    }
+
+    /**
+     * Calculates the power the motor draws from the bus, which is negative while it regenerates.
+     * The WPILib simulations report the current as positive while the motor drives its load in either direction, so the power is the current times the magnitude of the voltage.
+     *
+     * @return the power drawn from the bus in watts
+     */
+    double getSupplyPowerWatts() {
+        return getCurrent() * Math.abs(inputVoltage);
+    }
+
+    /**
+     * Gathers the input voltage from the input voltage supplier, if one was set.
+     * This is called by the {@link SimulationEngine} for every simulation before any of them are stepped, so the suppliers are never called from the engine's pool.
+     */
+    void gatherInputVoltage() {
+        if (inputVoltageSupplier != null)
+            inputVoltage = inputVoltageSupplier.getAsDouble();
+    }
+
     public abstract double getCurrent();
 
     public abstract double getSystemPositionRotations();
 
     public abstract double getSystemVelocityRotationsPerSecond();
 
-    public abstract void setInputVoltage(double voltage);
+    /**
+     * Sets the input voltage of the underlying simulation for the next step.
+     *
+     * @param voltage the voltage to set
+     */
+    abstract void setSimulationInputVoltage(double voltage);
+
+    /**
+     * Integrates the underlying simulation over a single step.
+     *
+     * @param timeSeconds the duration of the step
+     */
+    abstract void updateSimulation(double timeSeconds);
 
-    public abstract void updateMotor();
-}
\ No newline at end of file
+    private void warnIfSteppedOutsideEngine() {
+        if (!isRegistered || hasWarnedAboutSteppingOutsideEngine || SimulationEngine.isStepping())
+            return;
+
+        hasWarnedAboutSteppingOutsideEngine = true;
+        System.out.println("A registered " + getClass().getSimpleName() + " was stepped outside the SimulationEngine, so it's stepped more than once every loop. Remove the call to updateMotor(), since the engine steps the simulation.");
+    }
+}
@@ -4,7 +4,6 @@ import edu.wpi.first.math.system.plant.DCMotor;
 import edu.wpi.first.math.system.plant.LinearSystemId;
 import edu.wpi.first.math.util.Units;
 import edu.wpi.first.wpilibj.simulation.DCMotorSim;
-import frc.trigon.lib.hardware.RobotHardwareStats;
 
 /**
  * A class that represents a simulation of a simple motor mechanism, such as flywheel and turret mechanisms.
@@ -61,21 +60,13 @@ public class SimpleMotorSimulation extends MotorPhysicsSimulation {
         return Units.radiansToRotations(motorSimulation.getAngularVelocityRadPerSec());
     }
 
-    /**
-     * Sets the input voltage of the motor.
-     *
-     * @param voltage the voltage to set
-     */
     @Override
-    public void setInputVoltage(double voltage) {
+    void setSimulationInputVoltage(double voltage) {
         motorSimulation.setInputVoltage(voltage);
     }
 
-    /**
-     * Updates the motor simulation.
-     */
     @Override
-    public void updateMotor() {
-        motorSimulation.update(RobotHardwareStats.getPeriodicTimeSeconds());
+    void updateSimulation(double timeSeconds) {
+        motorSimulation.update(timeSeconds);
     }
 }
\ No newline at end of file
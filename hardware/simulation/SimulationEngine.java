@@ -0,0 +1,204 @@
+package frc.trigon.lib.hardware.simulation;
+
+import frc.trigon.lib.hardware.RobotHardwareStats;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Supplier;
+
+/**
+ * A class that owns all the {@link MotorPhysicsSimulation}s, and steps each of them exactly once every robot loop.
+ * Simulations register themselves when they're created. The simulated devices call {@link #update()} instead of stepping their own simulation,
+ * so a simulation that's shared between several motors isn't stepped more than once per loop.
+ * A new robot loop is detected once the robot clock moved at least half a robot loop since the simulations were last stepped.
+ * Optionally, {@link #periodic()} can be called once every robot loop (such as in the robot's simulationPeriodic method) to count the loops explicitly instead,
+ * which is exact even when the clock doesn't advance, like when the simulation is stepped manually.
+ * <p>
+ * This changes the contract of {@link MotorPhysicsSimulation}: simulations are no longer stepped by whoever calls {@link MotorPhysicsSimulation#updateMotor()}.
+ * Code that calls {@link MotorPhysicsSimulation#setInputVoltage(double)} and {@link MotorPhysicsSimulation#updateMotor()} itself steps a registered simulation twice every loop,
+ * so it should only set the input voltage, and leave the stepping to the engine. A warning is printed the first time a registered simulation is stepped outside the engine.
+ * Systems of coupled simulations, like a drivetrain, are stepped as a whole.
+ * The input voltages of all the simulations are gathered before any simulation is stepped, so every simulation is stepped with the voltages of the same moment.
+ * <p>
+ * The simulations (and systems) are independent of each other, so they can optionally be stepped in parallel on a fork-join pool using {@link #setParallelStepping(boolean)}.
+ */
+public class SimulationEngine {
+    /**
+     * The amount of simulations a single fork-join task steps before it stops splitting.
+     */
+    private static final int SEQUENTIAL_STEPPING_THRESHOLD = 2;
+    private static final ThreadLocal<Boolean> IS_REGISTERING_SIMULATIONS = ThreadLocal.withInitial(() -> true);
+    private static MotorPhysicsSimulation[] SIMULATIONS = new MotorPhysicsSimulation[0];
+    private static Runnable[] STEPS = new Runnable[0];
+    private static boolean IS_STEPPING_IN_PARALLEL = false;
+    private static ForkJoinPool POOL = null;
+    private static volatile boolean IS_STEPPING = false;
+    private static boolean IS_COUNTING_LOOPS = false;
+    private static long LOOP_COUNT = 0, LAST_STEPPED_LOOP_COUNT = -1;
+    private static double LAST_STEP_TIMESTAMP_SECONDS = Double.NEGATIVE_INFINITY;
+
+    /**
+     * Sets whether the simulations should be stepped in parallel. This is worth enabling on robots with many simulated mechanisms.
+     *
+     * @param isSteppingInParallel whether the simulations should be stepped in parallel
+     */
+    public static synchronized void setParallelStepping(boolean isSteppingInParallel) {
+        IS_STEPPING_IN_PARALLEL = isSteppingInParallel;
+        if (isSteppingInParallel && POOL == null)
+            POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @return whether the simulations are stepped in parallel, as set in {@link #setParallelStepping(boolean)}
+     */
+    public static boolean isSteppingInParallel() {
+        return IS_STEPPING_IN_PARALLEL;
+    }
+
+    /**
+     * Counts a robot loop. This is optional, but once it's called it must be called once every robot loop (such as in the robot's simulationPeriodic method),
+     * since the loops are then counted by it instead of being detected from the robot clock.
+     */
+    public static synchronized void periodic() {
+        IS_COUNTING_LOOPS = true;
+        LOOP_COUNT++;
+    }
+
+    /**
+     * Gathers the input voltages of every registered simulation, steps each of them once, and then updates the {@link BatterySimulation} with their current draw.
+     * Only the first call in every robot loop steps the simulations, so this can be called by every simulated device.
+     * The first call also starts the {@link AcceleratedSimulation}, if it was requested, since it's made on the first robot loop.
+     */
+    public static synchronized void update() {
+        AcceleratedSimulation.onRobotLoop();
+        if (!isNewLoop())
+            return;
+
+        LAST_STEPPED_LOOP_COUNT = LOOP_COUNT;
+        LAST_STEP_TIMESTAMP_SECONDS = RobotHardwareStats.getCurrentTimeSeconds();
+        for (MotorPhysicsSimulation simulation : SIMULATIONS)
+            simulation.gatherInputVoltage();
+
+        IS_STEPPING = true;
+        try {
+            if (IS_STEPPING_IN_PARALLEL && STEPS.length > SEQUENTIAL_STEPPING_THRESHOLD) {
+                POOL.invoke(new SteppingTask(STEPS, 0, STEPS.length));
+            } else {
+                for (Runnable step : STEPS)
+                    step.run();
+            }
+        } finally {
+            IS_STEPPING = false;
+        }
+
+        BatterySimulation.update(SIMULATIONS);
+    }
+
+    /**
+     * @return a copy of all the registered simulations
+     */
+    public static synchronized MotorPhysicsSimulation[] getSimulations() {
+        return SIMULATIONS.clone();
+    }
+
+    /**
+     * @return whether the engine is currently stepping the simulations. Used to detect simulations that are stepped outside the engine
+     */
+    static boolean isStepping() {
+        return IS_STEPPING;
+    }
+
+    /**
+     * Creates simulations that aren't registered to the engine, for stepping them manually outside the robot loop.
+     * Only affects simulations created on the calling thread.
+     *
+     * @param simulationFactory creates the simulations
+     * @param <T>               the type of the created object
+     * @return the created object
+     */
+    static <T> T createUnregistered(Supplier<T> simulationFactory) {
+        IS_REGISTERING_SIMULATIONS.set(false);
+        try {
+            return simulationFactory.get();
+        } finally {
+            IS_REGISTERING_SIMULATIONS.set(true);
+        }
+    }
+
+    /**
+     * Registers a simulation. Its input voltage is gathered and its current is drawn from the battery every loop.
+     * Simulations that are stepped independently are also stepped by the engine, and the others are stepped by the system they're a part of.
+     *
+     * @param simulation the simulation to register
+     * @return whether the simulation was registered, which is false for simulations created in {@link #createUnregistered(Supplier)}
+     */
+    static boolean register(MotorPhysicsSimulation simulation) {
+        if (!IS_REGISTERING_SIMULATIONS.get())
+            return false;
+
+        addSimulation(simulation);
+        if (simulation.isSteppedIndependently())
+            registerStep(simulation::updateMotor);
+        return true;
+    }
+
+    /**
+     * Registers the step of a system of coupled simulations, like the joints of an arm or the modules of a drivetrain, which must be stepped together.
+     * The system's simulations should be registered too, and not be stepped independently. The step runs once every loop, after all the input voltages are gathered.
+     *
+     * @param step steps the whole system over one robot loop
+     */
+    static void registerStep(Runnable step) {
+        if (IS_REGISTERING_SIMULATIONS.get())
+            addStep(step);
+    }
+
+    private static synchronized void addSimulation(MotorPhysicsSimulation simulation) {
+        SIMULATIONS = Arrays.copyOf(SIMULATIONS, SIMULATIONS.length + 1);
+        SIMULATIONS[SIMULATIONS.length - 1] = simulation;
+    }
+
+    private static synchronized void addStep(Runnable step) {
+        STEPS = Arrays.copyOf(STEPS, STEPS.length + 1);
+        STEPS[STEPS.length - 1] = step;
+    }
+
+    /**
+     * Checks whether a new robot loop started since the simulations were last stepped.
+     * If {@link #periodic()} is called, a loop is new once it's counted. Otherwise, it's new once the robot clock moved at least half a robot loop since the last step.
+     *
+     * @return whether the simulations should be stepped
+     */
+    private static boolean isNewLoop() {
+        if (IS_COUNTING_LOOPS)
+            return LOOP_COUNT != LAST_STEPPED_LOOP_COUNT;
+        return RobotHardwareStats.getCurrentTimeSeconds() - LAST_STEP_TIMESTAMP_SECONDS >= RobotHardwareStats.getPeriodicTimeSeconds() / 2;
+    }
+
+    /**
+     * A task that runs a range of steps, splitting it in half until it's small enough to run sequentially.
+     */
+    private static class SteppingTask extends RecursiveAction {
+        private final Runnable[] steps;
+        private final int fromIndex, toIndex;
+
+        private SteppingTask(Runnable[] steps, int fromIndex, int toIndex) {
+            this.steps = steps;
+            this.fromIndex = fromIndex;
+            this.toIndex = toIndex;
+        }
+
+        @Override
+        protected void compute() {
+            if (toIndex - fromIndex <= SEQUENTIAL_STEPPING_THRESHOLD) {
+                for (int i = fromIndex; i < toIndex; i++)
+                    steps[i].run();
+                return;
+            }
+
+            final int middleIndex = (fromIndex + toIndex) >>> 1;
+            invokeAll(new SteppingTask(steps, fromIndex, middleIndex), new SteppingTask(steps, middleIndex, toIndex));
+        }
+    }
+}
@@ -4,7 +4,6 @@ import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.system.plant.DCMotor;
 import edu.wpi.first.math.util.Units;
 import edu.wpi.first.wpilibj.simulation.SingleJointedArmSim;
-import frc.trigon.lib.hardware.RobotHardwareStats;
 
 /**
  * A class that represents a simulation of a single jointed arm mechanism.
@@ -61,21 +60,13 @@ public class SingleJointedArmSimulation extends MotorPhysicsSimulation {
         return Units.radiansToRotations(armSimulation.getVelocityRadPerSec());
     }
 
-    /**
-     * Sets the input voltage of the arm.
-     *
-     * @param voltage the voltage to set
-     */
     @Override
-    public void setInputVoltage(double voltage) {
+    void setSimulationInputVoltage(double voltage) {
         armSimulation.setInputVoltage(voltage);
     }
 
-    /**
-     * Updates the arm simulation.
-     */
     @Override
-    public void updateMotor() {
-        armSimulation.update(RobotHardwareStats.getPeriodicTimeSeconds());
+    void updateSimulation(double timeSeconds) {
+        armSimulation.update(timeSeconds);
     }
 }
\ No newline at end of file
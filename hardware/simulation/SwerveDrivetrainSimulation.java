@@ -0,0 +1,365 @@
+package frc.trigon.lib.hardware.simulation;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.math.system.plant.DCMotor;
+import edu.wpi.first.math.util.Units;
+import frc.trigon.lib.hardware.RobotHardwareStats;
+import frc.trigon.lib.hardware.phoenix6.pigeon2.Pigeon2Gyro;
+
+/**
+ * A class that represents a physics simulation of a swerve drivetrain.
+ * Every module has a drive motor and a steer motor, which are exposed as {@link MotorPhysicsSimulation}s so they can be set as the physics simulations of the simulated motors.
+ * The voltages of all the motors are integrated together into the chassis dynamics, including wheel slip against the carpet and the current limits of the motors.
+ * <p>
+ * The state of the modules is held in primitive arrays and every step is allocation-free, so the drivetrain can be sub-stepped at sub-millisecond rates using {@link #setSubSteps(int)}.
+ * The drivetrain is stepped as a whole by the {@link SimulationEngine}, once every robot loop.
+ */
+public class SwerveDrivetrainSimulation {
+    private static final double GRAVITY_METERS_PER_SECOND_SQUARED = 9.80665;
+    /**
+     * The slip velocity below which a wheel is considered to roll without slipping.
+     */
+    private static final double ROLLING_SLIP_TOLERANCE_METERS_PER_SECOND = 0.01;
+    private final int moduleCount;
+    private final double[] moduleXMeters, moduleYMeters;
+    private final SwerveModuleProperties moduleProperties;
+    private final double robotMassKilograms, robotMomentOfInertia, maximumFrictionForceNewtons;
+    private final ModuleMotorSimulation[] driveSimulations, steerSimulations;
+    private final double[]
+            steerAnglesRadians, steerVelocitiesRadiansPerSecond,
+            wheelPositionsRadians, wheelVelocitiesRadiansPerSecond,
+            driveCurrentsAmperes, steerCurrentsAmperes;
+    private double driveCurrentLimitAmperes = Double.POSITIVE_INFINITY, steerCurrentLimitAmperes = Double.POSITIVE_INFINITY;
+    private int subSteps = 1;
+    private double xMeters = 0, yMeters = 0, headingRadians = 0;
+    private double fieldRelativeXVelocityMetersPerSecond = 0, fieldRelativeYVelocityMetersPerSecond = 0, yawVelocityRadiansPerSecond = 0;
+    private volatile double averageYawVelocityRadiansPerSecond = 0;
+
+    /**
+     * Creates a new SwerveDrivetrainSimulation.
+     *
+     * @param moduleLocations      the locations of the modules relative to the center of the robot
+     * @param moduleProperties     the properties of the modules, which are the same for all the modules
+     * @param robotMassKilograms   the mass of the robot, including the bumpers and the battery
+     * @param robotMomentOfInertia the moment of inertia of the robot around its center, in kilograms meters squared
+     */
+    public SwerveDrivetrainSimulation(Translation2d[] moduleLocations, SwerveModuleProperties moduleProperties, double robotMassKilograms, double robotMomentOfInertia) {
+        this.moduleCount = moduleLocations.length;
+        this.moduleProperties = moduleProperties;
+        this.robotMassKilograms = robotMassKilograms;
+        this.robotMomentOfInertia = robotMomentOfInertia;
+        this.maximumFrictionForceNewtons = moduleProperties.wheelCoefficientOfFriction() * robotMassKilograms * GRAVITY_METERS_PER_SECOND_SQUARED / moduleCount;
+
+        moduleXMeters = new double[moduleCount];
+        moduleYMeters = new double[moduleCount];
+        for (int i = 0; i < moduleCount; i++) {
+            moduleXMeters[i] = moduleLocations[i].getX();
+            moduleYMeters[i] = moduleLocations[i].getY();
+        }
+
+        steerAnglesRadians = new double[moduleCount];
+        steerVelocitiesRadiansPerSecond = new double[moduleCount];
+        wheelPositionsRadians = new double[moduleCount];
+        wheelVelocitiesRadiansPerSecond = new double[moduleCount];
+        driveCurrentsAmperes = new double[moduleCount];
+        steerCurrentsAmperes = new double[moduleCount];
+        driveSimulations = new ModuleMotorSimulation[moduleCount];
+        steerSimulations = new ModuleMotorSimulation[moduleCount];
+        for (int i = 0; i < moduleCount; i++) {
+            driveSimulations[i] = new ModuleMotorSimulation(moduleProperties.driveGearRatio(), wheelPositionsRadians, wheelVelocitiesRadiansPerSecond, driveCurrentsAmperes, i);
+            steerSimulations[i] = new ModuleMotorSimulation(moduleProperties.steerGearRatio(), steerAnglesRadians, steerVelocitiesRadiansPerSecond, steerCurrentsAmperes, i);
+        }
+
+        SimulationEngine.registerStep(this::update);
+    }
+
+    /**
+     * Sets the amount of fixed steps the drivetrain is integrated in every robot loop.
+     *
+     * @param subSteps the amount of steps per robot loop
+     */
+    public void setSubSteps(int subSteps) {
+        this.subSteps = Math.max(1, subSteps);
+    }
+
+    /**
+     * Sets the stator current limits of the motors. The current of every motor is clamped to its limit before its torque is calculated.
+     *
+     * @param driveCurrentLimitAmperes the current limit of the drive motors
+     * @param steerCurrentLimitAmperes the current limit of the steer motors
+     */
+    public void setCurrentLimits(double driveCurrentLimitAmperes, double steerCurrentLimitAmperes) {
+        this.driveCurrentLimitAmperes = driveCurrentLimitAmperes;
+        this.steerCurrentLimitAmperes = steerCurrentLimitAmperes;
+    }
+
+    /**
+     * Makes the drivetrain supply the yaw velocity of a simulated gyro.
+     * The supplied velocity is the average of the last loop, and the drivetrain and the simulated gyro both advance by exactly one robot loop every loop,
+     * so the gyro's integrated yaw matches the drivetrain's heading as long as the gyro is updated once every loop.
+     *
+     * @param gyro the gyro
+     */
+    public void setGyro(Pigeon2Gyro gyro) {
+        gyro.setSimulationYawVelocitySupplier(this::getAverageYawVelocityRadiansPerSecond);
+    }
+
+    /**
+     * Gets the simulation of a module's drive motor. Its system position is the wheel's rotations.
+     *
+     * @param moduleIndex the index of the module, ordered like the module locations
+     * @return the simulation of the drive motor
+     */
+    public MotorPhysicsSimulation getDriveSimulation(int moduleIndex) {
+        return driveSimulations[moduleIndex];
+    }
+
+    /**
+     * Gets the simulation of a module's steer motor. Its system position is the module's angle in rotations.
+     *
+     * @param moduleIndex the index of the module, ordered like the module locations
+     * @return the simulation of the steer motor
+     */
+    public MotorPhysicsSimulation getSteerSimulation(int moduleIndex) {
+        return steerSimulations[moduleIndex];
+    }
+
+    /**
+     * Resets the pose of the robot and stops it.
+     *
+     * @param pose the pose to reset to
+     */
+    public synchronized void resetPose(Pose2d pose) {
+        xMeters = pose.getX();
+        yMeters = pose.getY();
+        headingRadians = pose.getRotation().getRadians();
+        fieldRelativeXVelocityMetersPerSecond = 0;
+        fieldRelativeYVelocityMetersPerSecond = 0;
+        yawVelocityRadiansPerSecond = 0;
+        averageYawVelocityRadiansPerSecond = 0;
+    }
+
+    /**
+     * @return the simulated pose of the robot on the field
+     */
+    public synchronized Pose2d getPose() {
+        return new Pose2d(xMeters, yMeters, new Rotation2d(headingRadians));
+    }
+
+    /**
+     * @return the simulated field relative velocity of the robot
+     */
+    public synchronized ChassisSpeeds getFieldRelativeSpeeds() {
+        return new ChassisSpeeds(fieldRelativeXVelocityMetersPerSecond, fieldRelativeYVelocityMetersPerSecond, yawVelocityRadiansPerSecond);
+    }
+
+    /**
+     * @return the average yaw velocity of the robot during the last loop
+     */
+    public double getAverageYawVelocityRadiansPerSecond() {
+        return averageYawVelocityRadiansPerSecond;
+    }
+
+    private synchronized void update() {
+        final double startingHeadingRadians = headingRadians;
+        final double periodicTimeSeconds = RobotHardwareStats.getPeriodicTimeSeconds();
+        final double subStepTimeSeconds = periodicTimeSeconds / subSteps;
+        for (int i = 0; i < subSteps; i++)
+            step(subStepTimeSeconds);
+        averageYawVelocityRadiansPerSecond = (headingRadians - startingHeadingRadians) / periodicTimeSeconds;
+    }
+
+    private void step(double timeSeconds) {
+        final double cosHeading = Math.cos(headingRadians), sinHeading = Math.sin(headingRadians);
+        final double robotRelativeXVelocity = cosHeading * fieldRelativeXVelocityMetersPerSecond + sinHeading * fieldRelativeYVelocityMetersPerSecond;
+        final double robotRelativeYVelocity = -sinHeading * fieldRelativeXVelocityMetersPerSecond + cosHeading * fieldRelativeYVelocityMetersPerSecond;
+        double robotRelativeXForce = 0, robotRelativeYForce = 0, torque = 0;
+
+        for (int i = 0; i < moduleCount; i++) {
+            stepSteer(i, timeSeconds);
+
+            final double cosSteer = Math.cos(steerAnglesRadians[i]), sinSteer = Math.sin(steerAnglesRadians[i]);
+            final double moduleXVelocity = robotRelativeXVelocity - yawVelocityRadiansPerSecond * moduleYMeters[i];
+            final double moduleYVelocity = robotRelativeYVelocity + yawVelocityRadiansPerSecond * moduleXMeters[i];
+            final double longitudinalVelocity = moduleXVelocity * cosSteer + moduleYVelocity * sinSteer;
+            final double lateralVelocity = -moduleXVelocity * sinSteer + moduleYVelocity * cosSteer;
+
+            double longitudinalForce = calculateLongitudinalForce(i, longitudinalVelocity, timeSeconds);
+            double lateralForce = MathUtil.clamp(-calculateLateralEffectiveMass(i, cosSteer, sinSteer) * lateralVelocity / timeSeconds, -maximumFrictionForceNewtons, maximumFrictionForceNewtons);
+            final double totalForce = Math.hypot(longitudinalForce, lateralForce);
+            if (totalForce > maximumFrictionForceNewtons) {
+                longitudinalForce *= maximumFrictionForceNewtons / totalForce;
+                lateralForce *= maximumFrictionForceNewtons / totalForce;
+            }
+
+            final double moduleXForce = longitudinalForce * cosSteer - lateralForce * sinSteer;
+            final double moduleYForce = longitudinalForce * sinSteer + lateralForce * cosSteer;
+            robotRelativeXForce += moduleXForce;
+            robotRelativeYForce += moduleYForce;
+            torque += moduleXMeters[i] * moduleYForce - moduleYMeters[i] * moduleXForce;
+        }
+
+        final double fieldRelativeXForce = cosHeading * robotRelativeXForce - sinHeading * robotRelativeYForce;
+        final double fieldRelativeYForce = sinHeading * robotRelativeXForce + cosHeading * robotRelativeYForce;
+        fieldRelativeXVelocityMetersPerSecond += fieldRelativeXForce / robotMassKilograms * timeSeconds;
+        fieldRelativeYVelocityMetersPerSecond += fieldRelativeYForce / robotMassKilograms * timeSeconds;
+        yawVelocityRadiansPerSecond += torque / robotMomentOfInertia * timeSeconds;
+        xMeters += fieldRelativeXVelocityMetersPerSecond * timeSeconds;
+        yMeters += fieldRelativeYVelocityMetersPerSecond * timeSeconds;
+        headingRadians += yawVelocityRadiansPerSecond * timeSeconds;
+    }
+
+    /**
+     * Calculates the mass the carpet pushes against when it stops a module from sliding sideways.
+     * A lateral force on a module both pushes the chassis and rotates it around its center, so the module's lateral velocity responds to the force through 1/m + r²/I,
+     * where r is the lever arm of the lateral direction around the center. Ignoring the rotation makes modules far from the center overcorrect their slip and chatter.
+     * The mass is split between the modules, since all of them cancel their slip in the same step and their corrections add up through the shared chassis.
+     *
+     * @param moduleIndex the index of the module
+     * @param cosSteer    the cosine of the module's steer angle
+     * @param sinSteer    the sine of the module's steer angle
+     * @return the module's share of the effective mass in the lateral direction
+     */
+    private double calculateLateralEffectiveMass(int moduleIndex, double cosSteer, double sinSteer) {
+        final double leverArmMeters = moduleXMeters[moduleIndex] * cosSteer + moduleYMeters[moduleIndex] * sinSteer;
+        final double inverseMass = 1 / robotMassKilograms + leverArmMeters * leverArmMeters / robotMomentOfInertia;
+        return 1 / (inverseMass * moduleCount);
+    }
+
+    private void stepSteer(int moduleIndex, double timeSeconds) {
+        final DCMotor steerGearbox = moduleProperties.steerGearbox();
+        final double motorVelocityRadiansPerSecond = steerVelocitiesRadiansPerSecond[moduleIndex] * moduleProperties.steerGearRatio();
+        final double current = MathUtil.clamp(steerGearbox.getCurrent(motorVelocityRadiansPerSecond, steerSimulations[moduleIndex].getInputVoltage()), -steerCurrentLimitAmperes, steerCurrentLimitAmperes);
+        final double torque = steerGearbox.getTorque(current) * moduleProperties.steerGearRatio();
+
+        steerCurrentsAmperes[moduleIndex] = current;
+        steerVelocitiesRadiansPerSecond[moduleIndex] += torque / moduleProperties.steerMomentOfInertia() * timeSeconds;
+        steerAnglesRadians[moduleIndex] += steerVelocitiesRadiansPerSecond[moduleIndex] * timeSeconds;
+    }
+
+    /**
+     * Steps a module's wheel, and calculates the force the carpet applies on it along its rolling direction.
+     * A rolling wheel is locked to the ground, so the force is the drive torque over the wheel radius, and the wheel's velocity follows the ground's.
+     * Once the torque needs more force than the friction can provide, or the wheel's surface already moves faster than the ground, the wheel slips.
+     * A slipping wheel gets the kinetic friction force against its slip, and the rest of the torque accelerates the wheel itself.
+     *
+     * @param moduleIndex          the index of the module
+     * @param longitudinalVelocity the velocity of the ground under the module along the wheel's rolling direction
+     * @param timeSeconds          the duration of the step
+     * @return the longitudinal force on the module
+     */
+    private double calculateLongitudinalForce(int moduleIndex, double longitudinalVelocity, double timeSeconds) {
+        final DCMotor driveGearbox = moduleProperties.driveGearbox();
+        final double wheelRadiusMeters = moduleProperties.wheelRadiusMeters();
+        final double motorVelocityRadiansPerSecond = wheelVelocitiesRadiansPerSecond[moduleIndex] * moduleProperties.driveGearRatio();
+        final double current = MathUtil.clamp(driveGearbox.getCurrent(motorVelocityRadiansPerSecond, driveSimulations[moduleIndex].getInputVoltage()), -driveCurrentLimitAmperes, driveCurrentLimitAmperes);
+        final double wheelTorque = driveGearbox.getTorque(current) * moduleProperties.driveGearRatio();
+        final double slipVelocity = wheelVelocitiesRadiansPerSecond[moduleIndex] * wheelRadiusMeters - longitudinalVelocity;
+        driveCurrentsAmperes[moduleIndex] = current;
+
+        final double rollingForce = wheelTorque / wheelRadiusMeters;
+        final double force;
+        if (Math.abs(slipVelocity) < ROLLING_SLIP_TOLERANCE_METERS_PER_SECOND && Math.abs(rollingForce) <= maximumFrictionForceNewtons) {
+            force = rollingForce;
+            wheelVelocitiesRadiansPerSecond[moduleIndex] = longitudinalVelocity / wheelRadiusMeters;
+        } else {
+            force = maximumFrictionForceNewtons * Math.signum(slipVelocity == 0 ? rollingForce : slipVelocity);
+            wheelVelocitiesRadiansPerSecond[moduleIndex] += (wheelTorque - force * wheelRadiusMeters) / moduleProperties.driveMomentOfInertia() * timeSeconds;
+        }
+
+        wheelPositionsRadians[moduleIndex] += wheelVelocitiesRadiansPerSecond[moduleIndex] * timeSeconds;
+        return force;
+    }
+
+    /**
+     * The physical properties of a swerve module.
+     *
+     * @param driveGearbox               the drive motor of the module
+     * @param driveGearRatio             the gear ratio between the drive motor and the wheel
+     * @param driveMomentOfInertia       the moment of inertia of the wheel and the drive gearing, at the wheel, in kilograms meters squared
+     * @param steerGearbox               the steer motor of the module
+     * @param steerGearRatio             the gear ratio between the steer motor and the module's rotation
+     * @param steerMomentOfInertia       the moment of inertia of the module's rotation, in kilograms meters squared
+     * @param wheelRadiusMeters          the radius of the wheel
+     * @param wheelCoefficientOfFriction the coefficient of friction between the wheel and the carpet
+     */
+    public record SwerveModuleProperties(DCMotor driveGearbox, double driveGearRatio, double driveMomentOfInertia,
+                                         DCMotor steerGearbox, double steerGearRatio, double steerMomentOfInertia,
+                                         double wheelRadiusMeters, double wheelCoefficientOfFriction) {
+    }
+
+    /**
+     * A view of one of the drivetrain's motors. The input voltage is gathered by the {@link SimulationEngine}, and the state is read from the drivetrain's arrays.
+     * It isn't stepped on its own, since the drivetrain steps all of its motors together, so {@link #updateMotor()} does nothing.
+     * Sub-steps are set on the whole drivetrain, and the input voltage can't be interpolated, since the drivetrain holds every voltage for the entire loop.
+     */
+    private class ModuleMotorSimulation extends MotorPhysicsSimulation {
+        private final double[] positionsRadians, velocitiesRadiansPerSecond, currentsAmperes;
+        private final int moduleIndex;
+
+        private ModuleMotorSimulation(double gearRatio, double[] positionsRadians, double[] velocitiesRadiansPerSecond, double[] currentsAmperes, int moduleIndex) {
+            super(gearRatio);
+            this.positionsRadians = positionsRadians;
+            this.velocitiesRadiansPerSecond = velocitiesRadiansPerSecond;
+            this.currentsAmperes = currentsAmperes;
+            this.moduleIndex = moduleIndex;
+        }
+
+        @Override
+        public double getCurrent() {
+            return currentsAmperes[moduleIndex];
+        }
+
+        @Override
+        public double getSystemPositionRotations() {
+            return Units.radiansToRotations(positionsRadians[moduleIndex]);
+        }
+
+        @Override
+        public double getSystemVelocityRotationsPerSecond() {
+            return Units.radiansToRotations(velocitiesRadiansPerSecond[moduleIndex]);
+        }
+
+        @Override
+        boolean isSteppedIndependently() {
+            return false;
+        }
+
+        /**
+         * The current is the signed stator current, so unlike the WPILib simulations the power is the current times the signed voltage.
+         */
+        @Override
+        double getSupplyPowerWatts() {
+            return getCurrent() * getInputVoltage();
+        }
+
+        /**
+         * Sets the sub-steps of the whole drivetrain, since its motors are integrated together.
+         */
+        @Override
+        public void setSubSteps(int subSteps) {
+            SwerveDrivetrainSimulation.this.setSubSteps(subSteps);
+        }
+
+        /**
+         * Not supported, since the drivetrain holds every voltage for the entire loop. A warning is printed if interpolation is enabled.
+         */
+        @Override
+        public void setInterpolatingVoltage(boolean isInterpolatingVoltage) {
+            if (isInterpolatingVoltage)
+                System.out.println("The motors of a SwerveDrivetrainSimulation don't support interpolating the input voltage, so it's held for the entire loop.");
+        }
+
+        @Override
+        void setSimulationInputVoltage(double voltage) {
+        }
+
+        @Override
+        void updateSimulation(double timeSeconds) {
+        }
+    }
+}
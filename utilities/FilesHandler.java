@@ -57,7 +57,7 @@ public class FilesHandler {
     /**
      * Creates a file using a safe method of writing.
      * This method will write the string to a temporary file,
-     * delete the original file,
+     * delete the original file if it exists,
      * and rename the temporary file to the desired name.
      *
      * @param absolutePath the file's absolute path
@@ -68,7 +68,8 @@ public class FilesHandler {
         final String fileName = extractFileNameFromAbsolutePath(absolutePath);
 
         writeStringToFile(absolutePath + ".tmp", str);
-        deleteFile(absolutePath);
+        if (fileExists(absolutePath))
+            deleteFile(absolutePath);
         renameFile(absolutePath + ".tmp", fileName);
     }
 